@@ -0,0 +1,48 @@
+package benchmark.legacy;
+
+import org.springframework.data.annotation.CreatedBy;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedBy;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.EntityListeners;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+/**
+ * 변경 전 BaseEntity 와 같은 매핑(AuditingEntityListener + 스프링 데이터 어노테이션).
+ * AuditingHandler 가 메타데이터를 찾을 수 있도록 엔티티로 등록한다.
+ * study.datajpa2 밖에 두어 다른 벤치마크 컨텍스트에는 등록되지 않고, LegacyAuditingConfig 를 넣은 컨텍스트에만 등록된다.
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+public class LegacyAuditedEntity {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String name;
+
+    @CreatedDate
+    private LocalDateTime createDate;
+
+    @LastModifiedDate
+    private LocalDateTime lastModifiedDate;
+
+    @CreatedBy
+    private String createdBy;
+
+    @LastModifiedBy
+    private String lastModifiedBy;
+
+    protected LegacyAuditedEntity() {
+    }
+
+    public LegacyAuditedEntity(String name) {
+        this.name = name;
+    }
+}
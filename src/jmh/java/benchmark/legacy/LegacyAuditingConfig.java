@@ -0,0 +1,11 @@
+package benchmark.legacy;
+
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import study.datajpa2.DataJpa2Application;
+
+//애플리케이션 엔티티에 LegacyAuditedEntity 를 더해서 스캔한다. AuditingBenchmark 컨텍스트에만 넣는다.
+@Configuration
+@EntityScan(basePackageClasses = {DataJpa2Application.class, LegacyAuditedEntity.class})
+public class LegacyAuditingConfig {
+}
@@ -0,0 +1,104 @@
+package study.datajpa2.benchmark;
+
+import benchmark.legacy.LegacyAuditedEntity;
+import benchmark.legacy.LegacyAuditingConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.auditing.AuditingHandler;
+import org.springframework.data.auditing.CurrentDateTimeProvider;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import org.springframework.data.jpa.mapping.JpaMetamodelMappingContext;
+import org.springframework.data.mapping.context.PersistentEntities;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa2.auditing.AuditingClock;
+import study.datajpa2.auditing.CachedAuditorAware;
+import study.datajpa2.entity.BaseEntityAuditingListener;
+import study.datajpa2.entity.Member;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔티티 하나를 등록할 때 드는 auditing 비용 비교. DB 는 사용하지 않고 콜백만 호출한다.
+ * legacy: AuditingEntityListener + 호출마다 UUID.randomUUID() + LocalDateTime.now() (변경 전 구성)
+ * direct: BaseEntityAuditingListener + 트랜잭션마다 한번 만든 등록자 + coarse 시계
+ * 나머지는 등록자, 시계만 따로 비교한다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuditingBenchmark {
+
+    ConfigurableApplicationContext context;
+    AuditingEntityListener legacyListener;
+    BaseEntityAuditingListener directListener;
+    CachedAuditorAware cachedAuditorAware;
+    AuditingClock coarseClock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(0, 1, LegacyAuditingConfig.class);
+
+        final AuditingHandler legacyHandler = new AuditingHandler(PersistentEntities.of(context.getBean(JpaMetamodelMappingContext.class)));
+        legacyHandler.setAuditorAware(() -> Optional.of(UUID.randomUUID().toString()));
+        legacyHandler.setDateTimeProvider(CurrentDateTimeProvider.INSTANCE);
+        legacyListener = new AuditingEntityListener();
+        legacyListener.setAuditingHandler(() -> legacyHandler);
+
+        cachedAuditorAware = new CachedAuditorAware(() -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            return new UUID(random.nextLong(), random.nextLong()).toString();
+        });
+        coarseClock = new AuditingClock(true, Duration.ofMillis(10));
+        directListener = new BaseEntityAuditingListener(cachedAuditorAware, coarseClock);
+
+        //트랜잭션 안에서 여러 엔티티를 저장하는 상황
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.unbindResourceIfPossible(cachedAuditorAware);
+        context.close();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        final LegacyAuditedEntity entity = new LegacyAuditedEntity("member");
+        legacyListener.touchForCreate(entity);
+        bh.consume(entity);
+    }
+
+    @Benchmark
+    public void direct(Blackhole bh) {
+        final Member member = new Member("member");
+        directListener.prePersist(member);
+        bh.consume(member);
+    }
+
+    @Benchmark
+    public String uuidAuditor() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public Optional<String> cachedAuditor() {
+        return cachedAuditorAware.getCurrentAuditor();
+    }
+
+    @Benchmark
+    public LocalDateTime systemClock() {
+        return LocalDateTime.now();
+    }
+
+    @Benchmark
+    public LocalDateTime coarseClock() {
+        return coarseClock.now();
+    }
+}
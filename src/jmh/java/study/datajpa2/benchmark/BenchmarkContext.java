@@ -0,0 +1,65 @@
+package study.datajpa2.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.datajpa2.DataJpa2Application;
+import study.datajpa2.entity.Member;
+import study.datajpa2.entity.Team;
+import study.datajpa2.repository.MemberRepository;
+import study.datajpa2.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벤치마크용 스프링 컨텍스트. 인메모리 H2 에 데이터를 넣고 SQL 로그, p6spy, 2차 캐시는 끈다.
+ * 모든 회원의 username 은 USERNAME 으로 같게 넣어서 username 조건 메소드도 전체 row 를 조회하게 한다.
+ */
+public class BenchmarkContext {
+
+    public static final String USERNAME = "member";
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(int memberCount, int teamCount, Class<?>... extraSources) {
+        final SpringApplication application = new SpringApplication(DataJpa2Application.class);
+        application.addPrimarySources(Arrays.asList(extraSources));
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.main.web-application-type", "none");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.properties.hibernate.cache.use_second_level_cache", "false");
+        properties.put("spring.jpa.properties.hibernate.cache.use_query_cache", "false");
+        properties.put("spring.jpa.properties.hibernate.generate_statistics", "false");
+        properties.put("decorator.datasource.enabled", "false");
+        properties.put("logging.level.org.hibernate.SQL", "warn");
+        properties.put("logging.level.org.hibernate.type", "warn");
+        application.setDefaultProperties(properties);
+
+        final ConfigurableApplicationContext context = application.run();
+        load(context, memberCount, teamCount);
+        return context;
+    }
+
+    private static void load(ConfigurableApplicationContext context, int memberCount, int teamCount) {
+        final TeamRepository teamRepository = context.getBean(TeamRepository.class);
+        final MemberRepository memberRepository = context.getBean(MemberRepository.class);
+
+        final List<Team> teams = new ArrayList<>(teamCount);
+        for (int i = 0; i < teamCount; i++) {
+            teams.add(new Team("team" + i));
+        }
+        teamRepository.saveAllBatched(teams);
+
+        //MemberController.init 이 넣는 회원은 지운다.
+        memberRepository.deleteAllInBatch();
+        final List<Member> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            members.add(new Member(USERNAME, i % 100, teams.get(i % teamCount)));
+        }
+        memberRepository.saveAllBatched(members);
+    }
+}
@@ -0,0 +1,61 @@
+package study.datajpa2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.repository.ClaimMode;
+import study.datajpa2.repository.MemberRepository;
+import study.datajpa2.repository.MemberSpec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 worker 가 동시에 회원을 claim 해서 처리(나이 수정)하고 커밋할 때의 처리량.
+ * WAIT 은 모든 worker 가 같은 row 를 잡으려고 줄을 서고, SKIP_LOCKED 는 잠긴 row 를 건너뛰고 다른 row 를 가져간다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class ClaimContentionBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    @Param({"10"})
+    int batchSize;
+
+    @Param({"SKIP_LOCKED", "WAIT"})
+    ClaimMode mode;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(memberCount, 10);
+        memberRepository = context.getBean(MemberRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void claimAndProcess(Blackhole bh) {
+        transactionTemplate.executeWithoutResult(status -> {
+            final List<Member> claimed = memberRepository.claim(MemberSpec.username(BenchmarkContext.USERNAME), batchSize, mode);
+            for (Member member : claimed) {
+                member.setAge(member.getAge() + 1);
+            }
+            bh.consume(claimed.size());
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package study.datajpa2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.repository.MemberRepository;
+import study.datajpa2.repository.NestedClosedProjections;
+import study.datajpa2.repository.UsernameOnly;
+import study.datajpa2.repository.UsernameOnlyDto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 회원 + 팀 조회 방법별, 프로젝션 방법별 처리량/지연시간/할당량 비교.
+ * 모든 벤치마크는 읽기 전용 트랜잭션 하나에서 조회하고 팀 이름까지 읽어서 지연로딩 비용도 포함한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FetchStrategyBenchmark {
+
+    @Param({"1000", "10000"})
+    int memberCount;
+
+    @Param({"10"})
+    int teamCount;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(memberCount, teamCount);
+        memberRepository = context.getBean(MemberRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void fetchJoin(Blackhole bh) {
+        members(bh, () -> memberRepository.findMemberFetchJoin());
+    }
+
+    @Benchmark
+    public void entityGraphFindAll(Blackhole bh) {
+        members(bh, () -> memberRepository.findAll());
+    }
+
+    @Benchmark
+    public void entityGraphJpql(Blackhole bh) {
+        members(bh, () -> memberRepository.findMemberEntityGraph());
+    }
+
+    @Benchmark
+    public void entityGraphDerived(Blackhole bh) {
+        members(bh, () -> memberRepository.findEntityGraphByUsername(BenchmarkContext.USERNAME));
+    }
+
+    @Benchmark
+    public void openProjection(Blackhole bh) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (UsernameOnly projection : memberRepository.findProjectionsByUsername(BenchmarkContext.USERNAME, UsernameOnly.class)) {
+                bh.consume(projection.getUsername());
+            }
+        });
+    }
+
+    @Benchmark
+    public void dtoProjection(Blackhole bh) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (UsernameOnlyDto projection : memberRepository.findProjectionsByUsername(BenchmarkContext.USERNAME, UsernameOnlyDto.class)) {
+                bh.consume(projection.getUsername());
+            }
+        });
+    }
+
+    @Benchmark
+    public void nestedClosedProjection(Blackhole bh) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (NestedClosedProjections projection : memberRepository.findProjectionsByUsername(BenchmarkContext.USERNAME, NestedClosedProjections.class)) {
+                bh.consume(projection.getUsername());
+                bh.consume(projection.getTeam().getName());
+            }
+        });
+    }
+
+    private void members(Blackhole bh, Supplier<List<Member>> query) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Member member : query.get()) {
+                bh.consume(member.getUsername());
+                bh.consume(member.getTeam().getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package study.datajpa2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.datajpa2.entity.Item;
+import study.datajpa2.repository.ItemRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item 10000 건 저장 처리량. 결과 단위는 row/s 이다. (OperationsPerInvocation)
+ * saveAll 은 Persistable.isNew() 로 merge 없이 persist 하고 hibernate batch insert 를 사용한다.
+ * bulkInsert 는 JdbcTemplate batchUpdate 로 엔티티 없이 넣는다.
+ * application.yml 의 SQL debug 로그가 켜져 있으면 row 마다 로그를 남기는 saveAll 이 로그 출력에 묶이므로
+ * -jvmArgsAppend "-Dlogging.level.org.hibernate.SQL=warn -Dlogging.level.org.hibernate.type=warn" 로 끄고 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ItemBulkInsertBenchmark.ROWS)
+public class ItemBulkInsertBenchmark {
+
+    static final int ROWS = 10000;
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+    long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(0, 1);
+        itemRepository = context.getBean(ItemRepository.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        itemRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> saveAll() {
+        return itemRepository.saveAll(items());
+    }
+
+    @Benchmark
+    public int bulkInsert() {
+        return itemRepository.bulkInsert(items());
+    }
+
+    //중복 확인(not exists)을 하는 insert
+    @Benchmark
+    public int bulkInsertIgnoreDuplicates() {
+        return itemRepository.bulkInsertIgnoreDuplicates(items());
+    }
+
+    private List<Item> items() {
+        final List<Item> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            items.add(new Item("item-" + sequence++));
+        }
+        return items;
+    }
+}
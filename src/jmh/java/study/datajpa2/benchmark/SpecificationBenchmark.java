@@ -0,0 +1,57 @@
+package study.datajpa2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.dto.MemberSearchCondition;
+import study.datajpa2.repository.MemberRepository;
+import study.datajpa2.repository.MemberSpec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 검색 조건을 Specification(Criteria) 으로 실행할 때와 캐시된 JPQL 템플릿으로 실행할 때 비교.
+ * 결과 row 가 적어야 DB 시간보다 쿼리 생성 비용이 드러나므로 회원 수는 작게 둔다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SpecificationBenchmark {
+
+    @Param({"100"})
+    int memberCount;
+
+    @Param({"10"})
+    int teamCount;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate transactionTemplate;
+
+    final MemberSearchCondition condition = new MemberSearchCondition(BenchmarkContext.USERNAME, "team1");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(memberCount, teamCount);
+        memberRepository = context.getBean(MemberRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void specification(Blackhole bh) {
+        transactionTemplate.executeWithoutResult(status -> bh.consume(memberRepository.findAll(MemberSpec.of(condition))));
+    }
+
+    @Benchmark
+    public void cachedTemplate(Blackhole bh) {
+        transactionTemplate.executeWithoutResult(status -> bh.consume(memberRepository.search(condition)));
+    }
+}
@@ -0,0 +1,93 @@
+package study.datajpa2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.repository.MemberRepository;
+import study.datajpa2.repository.OptimisticRetryExecutor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 여러 worker 가 회원 한 명을 조회해서 수정(나이 + 1)하고 커밋할 때의 처리량.
+ * PESSIMISTIC 은 select ... for update 로 잠그고 수정하고, OPTIMISTIC 은 잠그지 않고 수정한 뒤 version 충돌이 나면 OptimisticRetryExecutor 가 다시 실행한다.
+ * hotRows 는 worker 들이 수정하는 회원 수로, 작을수록 충돌이 잦다.
+ * 재시도를 다 써도 실패한 작업은 처리량에서 빠지고 tearDown 에서 충돌/재시도/실패 수를 출력한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class WriteLockBenchmark {
+
+    public enum LockStrategy {
+        OPTIMISTIC, PESSIMISTIC
+    }
+
+    @Param({"10000"})
+    int memberCount;
+
+    @Param({"1000", "8"})
+    int hotRows;
+
+    @Param({"OPTIMISTIC", "PESSIMISTIC"})
+    LockStrategy strategy;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    TransactionTemplate transactionTemplate;
+    OptimisticRetryExecutor retryExecutor;
+    List<Long> ids;
+    final AtomicLong failed = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(memberCount, 10);
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        retryExecutor = context.getBean(OptimisticRetryExecutor.class);
+        ids = context.getBean(MemberRepository.class).findAll().stream()
+                .map(Member::getId)
+                .limit(hotRows)
+                .collect(Collectors.toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s hotRows=%d conflicts=%d retries=%d failed=%d%n", strategy, hotRows,
+                retryExecutor.getConflictCount(), retryExecutor.getRetryCount(), failed.get());
+        context.close();
+    }
+
+    @Benchmark
+    public void updateAge(Blackhole bh) {
+        final Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        if (strategy == LockStrategy.PESSIMISTIC) {
+            transactionTemplate.executeWithoutResult(status ->
+                    bh.consume(increaseAge(em.find(Member.class, id, LockModeType.PESSIMISTIC_WRITE))));
+            return;
+        }
+        try {
+            retryExecutor.execute(() -> bh.consume(increaseAge(em.find(Member.class, id))));
+        } catch (OptimisticLockingFailureException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private static int increaseAge(Member member) {
+        member.setAge(member.getAge() + 1);
+        return member.getAge();
+    }
+}
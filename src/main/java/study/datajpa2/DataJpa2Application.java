@@ -6,10 +6,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 
-import java.util.Optional;
+import study.datajpa2.auditing.CachedAuditorAware;
+
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
-@EnableJpaAuditing
+//Item 의 @CreatedDate 는 AuditingEntityListener 로, BaseEntity 는 BaseEntityAuditingListener 로 채운다. 둘 다 같은 시계 사용.
+@EnableJpaAuditing(dateTimeProviderRef = "auditingClock")
 @SpringBootApplication
 public class DataJpa2Application {
 
@@ -17,8 +20,12 @@ public class DataJpa2Application {
 		SpringApplication.run(DataJpa2Application.class, args);
 	}
 
+	//UUID.randomUUID() 는 SecureRandom 을 사용하므로 요청/트랜잭션마다 한번만 만든다.
 	@Bean
 	public AuditorAware<String> auditorProvider() {
-		return () -> Optional.of(UUID.randomUUID().toString());
+		return new CachedAuditorAware(() -> {
+			final ThreadLocalRandom random = ThreadLocalRandom.current();
+			return new UUID(random.nextLong(), random.nextLong()).toString();
+		});
 	}
 }
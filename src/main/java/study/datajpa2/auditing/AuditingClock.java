@@ -0,0 +1,58 @@
+package study.datajpa2.auditing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.Optional;
+
+/**
+ * 등록일/수정일에 쓰는 시계. coarse 이면 resolution 동안 같은 시각을 재사용해서
+ * 대량 저장시 엔티티마다 LocalDateTime.now() 를 호출하지 않는다.
+ * 엔티티에서는 빈으로 등록되는 엔티티 리스너(BaseEntityAuditingListener, JpaBaseEntityAuditingListener)가 주입받아 사용한다.
+ */
+@Component
+public class AuditingClock implements DateTimeProvider {
+
+    private final boolean coarse;
+    private final long resolutionNanos;
+    private volatile Tick tick;
+
+    public AuditingClock(@Value("${auditing.coarse-clock:false}") boolean coarse,
+                         @Value("${auditing.clock-resolution:10ms}") Duration resolution) {
+        this.coarse = coarse;
+        this.resolutionNanos = resolution.toNanos();
+    }
+
+    public LocalDateTime now() {
+        if (!coarse) {
+            return LocalDateTime.now();
+        }
+        final long nanos = System.nanoTime();
+        Tick current = tick;
+        //동시에 갱신해도 둘 다 현재 시각이므로 문제 없다.
+        if (current == null || nanos - current.nanos >= resolutionNanos) {
+            current = new Tick(LocalDateTime.now(), nanos);
+            tick = current;
+        }
+        return current.time;
+    }
+
+    @Override
+    public Optional<TemporalAccessor> getNow() {
+        return Optional.of(now());
+    }
+
+    private static class Tick {
+        private final LocalDateTime time;
+        private final long nanos;
+
+        private Tick(LocalDateTime time, long nanos) {
+            this.time = time;
+            this.nanos = nanos;
+        }
+    }
+}
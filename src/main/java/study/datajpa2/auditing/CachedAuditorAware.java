@@ -0,0 +1,55 @@
+package study.datajpa2.auditing;
+
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * 등록자/수정자를 HTTP 요청 또는 트랜잭션마다 한번만 만들고 재사용한다.
+ * 요청도 트랜잭션도 없으면 호출할 때마다 만든다.
+ */
+public class CachedAuditorAware implements AuditorAware<String> {
+
+    private static final String ATTRIBUTE = CachedAuditorAware.class.getName();
+
+    private final Supplier<String> auditorSupplier;
+
+    public CachedAuditorAware(Supplier<String> auditorSupplier) {
+        this.auditorSupplier = auditorSupplier;
+    }
+
+    @Override
+    public Optional<String> getCurrentAuditor() {
+        final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            String auditor = (String) requestAttributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (auditor == null) {
+                auditor = auditorSupplier.get();
+                requestAttributes.setAttribute(ATTRIBUTE, auditor, RequestAttributes.SCOPE_REQUEST);
+            }
+            return Optional.of(auditor);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            String auditor = (String) TransactionSynchronizationManager.getResource(this);
+            if (auditor == null) {
+                auditor = auditorSupplier.get();
+                TransactionSynchronizationManager.bindResource(this, auditor);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(CachedAuditorAware.this);
+                    }
+                });
+            }
+            return Optional.of(auditor);
+        }
+
+        return Optional.of(auditorSupplier.get());
+    }
+}
@@ -0,0 +1,42 @@
+package study.datajpa2.controller;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * 핸들러 하나만 비동기 요청 timeout(spring.mvc.async.request-timeout)을 바꾼다.
+ * StreamingResponseBody 는 WebAsyncTask 처럼 timeout 을 지정할 수 없으므로 핸들러에서 setTimeout 으로 요청에 남기고
+ * 비동기 처리가 시작되기 전에 적용한다.
+ */
+@Configuration
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+
+    private static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".timeout";
+
+    //0 이하면 timeout 없음
+    public static void setTimeout(HttpServletRequest request, Duration timeout) {
+        request.setAttribute(TIMEOUT_ATTRIBUTE, timeout);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                final Duration timeout = (Duration) request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (timeout != null && request instanceof AsyncWebRequest) {
+                    ((AsyncWebRequest) request).setTimeout(timeout.isNegative() || timeout.isZero() ? -1L : timeout.toMillis());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package study.datajpa2.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class CacheStatsController {
+
+    private final EntityManagerFactory emf;
+
+    //2차 캐시, 쿼리 캐시 region 별 hit/miss/put, 쿼리 플랜 캐시 hit/miss
+    @GetMapping("/cache-stats")
+    public Map<String, Map<String, Long>> cacheStats() {
+        final Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        final Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            final CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            final Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("hit", region.getHitCount());
+            stats.put("miss", region.getMissCount());
+            stats.put("put", region.getPutCount());
+            stats.put("size", region.getElementCountInMemory());
+            result.put(regionName, stats);
+        }
+
+        //하이버네이트 쿼리 플랜 캐시. in 절 크기가 다양하면 miss 가 늘어난다.
+        final Map<String, Long> queryPlan = new LinkedHashMap<>();
+        queryPlan.put("hit", statistics.getQueryPlanCacheHitCount());
+        queryPlan.put("miss", statistics.getQueryPlanCacheMissCount());
+        result.put("query-plan", queryPlan);
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package study.datajpa2.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.ServletServerHttpRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+/**
+ * 조건부 GET 헤더(If-None-Match, If-Modified-Since)를 서블릿 쓰레드에서 복사해 둔다.
+ * version 조회를 repositoryExecutor 에서 하므로 비교도 그 쓰레드에서 하는데, 요청 객체는 다른 쓰레드에서 사용하면 안된다.
+ * 비교 방법은 WebRequest.checkNotModified 와 같다. (If-None-Match 가 있으면 ETag 만 약한 비교, 없으면 수정일시를 초 단위로 비교)
+ */
+class ConditionalRequest {
+
+    private final List<String> ifNoneMatch;
+    private final long ifModifiedSince;
+
+    private ConditionalRequest(List<String> ifNoneMatch, long ifModifiedSince) {
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+    }
+
+    static ConditionalRequest of(HttpServletRequest request) {
+        final HttpHeaders headers = new ServletServerHttpRequest(request).getHeaders();
+        return new ConditionalRequest(headers.getIfNoneMatch(), headers.getIfModifiedSince());
+    }
+
+    boolean isNotModified(String etag) {
+        return isNotModified(etag, -1);
+    }
+
+    boolean isNotModified(String etag, long lastModified) {
+        if (!ifNoneMatch.isEmpty()) {
+            for (String candidate : ifNoneMatch) {
+                if ("*".equals(candidate) || weak(candidate).equals(weak(etag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    private static String weak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
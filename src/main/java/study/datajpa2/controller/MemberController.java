@@ -1,45 +1,226 @@
 package study.datajpa2.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import study.datajpa2.dto.MemberDto;
+import study.datajpa2.dto.UsernameMatchDto;
 import study.datajpa2.entity.Member;
+import study.datajpa2.querycount.QueryBudget;
+import study.datajpa2.repository.AsyncMemberRepository;
+import study.datajpa2.repository.InvalidContinuationTokenException;
+import study.datajpa2.repository.KeysetSlice;
 import study.datajpa2.repository.MemberRepository;
+import study.datajpa2.repository.MemberVersion;
+import study.datajpa2.repository.PageCountCache;
+import study.datajpa2.repository.PagedMemberRepository;
+import study.datajpa2.repository.UsernameIndex;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
     private final MemberRepository memberRepository;
+    private final AsyncMemberRepository asyncMemberRepository;
+    private final PagedMemberRepository pagedMemberRepository;
+    private final PageCountCache pageCountCache;
+    private final UsernameIndex usernameIndex;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
 
+    @Value("${member-export.timeout:30m}")
+    private Duration exportTimeout;
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    //CompletableFuture 를 반환하면 조회는 repositoryExecutor 에서 하고 서블릿 쓰레드는 바로 반환된다.
+    //version, 수정일시만 먼저 조회해서 클라이언트가 가진 것과 같으면 엔티티를 로딩하지 않고 304 를 반환한다.
+    @QueryBudget(2)    //version + 엔티티
     @GetMapping("/members/{id}")
-    public String findMember(@PathVariable("id") Long id) {
-        final Member member = memberRepository.findById(id).get();
-        return member.getUsername();
+    public CompletableFuture<ResponseEntity<String>> findMember(@PathVariable("id") Long id, HttpServletRequest request) {
+        final ConditionalRequest conditional = ConditionalRequest.of(request);
+        return asyncMemberRepository.findVersionById(id).thenCompose(found -> {
+            if (found.isPresent()) {
+                final MemberVersion version = found.get();
+                if (conditional.isNotModified(etag(version.getVersion()), epochMilli(version.getLastModifiedDate()))) {
+                    return CompletableFuture.completedFuture(validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED),
+                            version.getVersion(), version.getLastModifiedDate()).build());
+                }
+            }
+            return asyncMemberRepository.findById(id)
+                    .thenApply(Optional::get)
+                    .thenApply(member -> validators(ResponseEntity.ok(), member.getVersion(), member.getLastModifiedDate())
+                            .body(member.getUsername()));
+        });
     }
 
+    //도메인 클래스 컨버터가 엔티티를 이미 조회했으므로(2차 캐시) 조회는 줄일 수 없고 응답 바디만 줄인다.
+    @QueryBudget(1)
     @GetMapping("/members2/{id}")
-    public String findMember2(@PathVariable("id") Member member) {
-        return member.getUsername();
+    public ResponseEntity<String> findMember2(@PathVariable("id") Member member, WebRequest request) {
+        if (isNotModified(request, member.getVersion(), member.getLastModifiedDate())) {
+            return validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED),
+                    member.getVersion(), member.getLastModifiedDate()).build();
+        }
+        return validators(ResponseEntity.ok(), member.getVersion(), member.getLastModifiedDate()).body(member.getUsername());
     }
 
+    //페이지는 row 가 추가/삭제되어도 수정일시가 바뀌지 않으므로 Last-Modified 없이 ETag 만 사용한다.
+    @QueryBudget(3)    //version 목록 + content + count
     @GetMapping("/members")
-    public Page<MemberDto> list(@PageableDefault(size = 5) Pageable pageable) {
-        return memberRepository.findAll(pageable)
+    public CompletableFuture<ResponseEntity<Page<MemberDto>>> list(@PageableDefault(size = 5) Pageable pageable,
+                                                                   HttpServletRequest request) {
+        final ConditionalRequest conditional = ConditionalRequest.of(request);
+        return asyncMemberRepository.findAllEtag(pageable).thenCompose(etag -> conditional.isNotModified(etag)
+                ? CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build())
+                : asyncMemberRepository.findAll(pageable).thenApply(page -> ResponseEntity.ok().eTag(etag).body(page)));
+    }
+
+    @QueryBudget(3)    //version 목록 + content + count
+    @GetMapping(value = "/members", params = "age")
+    public CompletableFuture<ResponseEntity<Page<MemberDto>>> listByAge(@RequestParam("age") int age,
+                                                                        @PageableDefault(size = 5) Pageable pageable,
+                                                                        HttpServletRequest request) {
+        final ConditionalRequest conditional = ConditionalRequest.of(request);
+        return asyncMemberRepository.findByAgeEtag(age, pageable).thenCompose(etag -> conditional.isNotModified(etag)
+                ? CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build())
+                : asyncMemberRepository.findByAge(age, pageable).thenApply(page -> ResponseEntity.ok().eTag(etag).body(page)));
+    }
+
+    //repositoryExecutor 의 쓰레드와 큐가 모두 차 있으면 기다리지 않고 503 으로 거절한다.
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> rejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    //잘못된 continuationToken 은 클라이언트 오류
+    @ExceptionHandler(InvalidContinuationTokenException.class)
+    public ResponseEntity<String> invalidToken(InvalidContinuationTokenException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @GetMapping("/members/count-stats")
+    public Map<String, Long> countStats() {
+        final Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("executed", pageCountCache.getExecutedCount());
+        stats.put("saved", pageCountCache.getSavedCount());
+        stats.put("skipped", pageCountCache.getSkippedCount());
+        stats.put("cachedHit", pageCountCache.getCachedHitCount());
+        return stats;
+    }
+
+    //username 접두어 검색. like 'x%' 쿼리 대신 메모리 인덱스(UsernameIndex)를 사용한다.
+    @QueryBudget(0)
+    @GetMapping("/members/search")
+    public List<UsernameMatchDto> search(@RequestParam("prefix") String prefix,
+                                         @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return usernameIndex.search(prefix, Math.min(limit, 1000));
+    }
+
+    //인덱스 메모리 사용량 (추정치)
+    @GetMapping("/members/search/footprint")
+    public Map<String, Long> searchFootprint() {
+        return usernameIndex.getFootprint();
+    }
+
+    //?mode=keyset 이면 offset 대신 continuationToken 으로 다음 페이지를 조회한다. 깊은 페이지도 첫 페이지와 비용이 같다.
+    @QueryBudget(1)
+    @GetMapping(value = "/members", params = "mode=keyset")
+    public KeysetSlice<MemberDto> keysetList(@PageableDefault(size = 5) Pageable pageable,
+                                             @RequestParam(value = "token", required = false) String token) {
+        return memberRepository.findKeysetPage(pageable.getSort(), token, pageable.getPageSize())
                 .map(MemberDto::new);
     }
 
+    //회원 전체를 한줄에 하나씩 JSON 으로 내려준다. 커서로 읽으면서 바로 쓰기 때문에 회원수와 상관없이 메모리가 일정함.
+    //회원이 많으면 기본 async timeout(spring.mvc.async.request-timeout)보다 오래 걸리므로 따로 지정한다.
+    @GetMapping(value = "/members/export", produces = "application/x-ndjson")
+    public StreamingResponseBody export(HttpServletRequest request) {
+        AsyncTimeoutConfig.setTimeout(request, exportTimeout);
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        return out -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Member> members = memberRepository.streamAll(EXPORT_FETCH_SIZE, EXPORT_FETCH_SIZE)) {
+                long count = 0;
+                final Iterator<Member> iterator = members.iterator();
+                while (iterator.hasNext()) {
+                    final Member member = iterator.next();
+                    final String teamName = member.getTeam() == null ? null : member.getTeam().getName();
+                    out.write(objectMapper.writeValueAsBytes(new MemberDto(member.getId(), member.getUsername(), teamName)));
+                    out.write('\n');
+                    if (++count % EXPORT_FETCH_SIZE == 0) {
+                        out.flush();
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    //If-None-Match 가 있으면 ETag 로, 없으면 If-Modified-Since 로 비교한다. 같으면 응답 상태를 304 로 바꾼다.
+    private static boolean isNotModified(WebRequest request, Long version, LocalDateTime lastModifiedDate) {
+        return request.checkNotModified(etag(version), epochMilli(lastModifiedDate));
+    }
+
+    private static long epochMilli(LocalDateTime dateTime) {
+        return dateTime == null ? -1 : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static <B extends ResponseEntity.HeadersBuilder<B>> B validators(B builder, Long version, LocalDateTime lastModifiedDate) {
+        builder.eTag(etag(version));
+        if (lastModifiedDate != null) {
+            builder.lastModified(lastModifiedDate.atZone(ZoneId.systemDefault()));
+        }
+        return builder;
+    }
+
+    private static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
     @PostConstruct
     public void init() {
+        final List<Member> members = new ArrayList<>();
         for (int i = 0; i < 100; i++) {
-            memberRepository.save(new Member("user" + i, i));
+            members.add(new Member("user" + i, i));
         }
+        memberRepository.saveAllBatched(members);
     }
 }
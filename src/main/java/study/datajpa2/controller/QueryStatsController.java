@@ -0,0 +1,51 @@
+package study.datajpa2.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.datajpa2.querycount.RepositoryQueryStats;
+import study.datajpa2.queryplan.IndexAdvisor;
+import study.datajpa2.queryplan.IndexRecommendation;
+import study.datajpa2.repository.OptimisticRetryExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class QueryStatsController {
+
+    private final RepositoryQueryStats repositoryQueryStats;
+    private final OptimisticRetryExecutor optimisticRetryExecutor;
+    private final IndexAdvisor indexAdvisor;
+
+    //MemberRepository 메소드별 호출 수, 실행된 SQL 수
+    @GetMapping("/query-stats")
+    public Map<String, Map<String, Long>> queryStats() {
+        final Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        repositoryQueryStats.getStats().forEach((method, counts) -> {
+            final Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("invocations", counts[0]);
+            stats.put("statements", counts[1]);
+            result.put(method, stats);
+        });
+        return result;
+    }
+
+    //낙관적 락 충돌, 재시도 수
+    @GetMapping("/retry-stats")
+    public Map<String, Long> retryStats() {
+        final Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("conflict", optimisticRetryExecutor.getConflictCount());
+        stats.put("retry", optimisticRetryExecutor.getRetryCount());
+        stats.put("exhausted", optimisticRetryExecutor.getExhaustedCount());
+        return stats;
+    }
+
+    //실행된 SQL 조건 중 인덱스가 없는 것. 효과(estimatedRowsSaved)가 큰 순서
+    @GetMapping("/index-advice")
+    public List<IndexRecommendation> indexAdvice() {
+        return indexAdvisor.advise();
+    }
+}
@@ -0,0 +1,73 @@
+package study.datajpa2.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.datajpa2.dto.TeamAgeStatsDto;
+import study.datajpa2.querycount.QueryBudget;
+import study.datajpa2.repository.TeamAgeSummary;
+import study.datajpa2.repository.TeamMemberCounter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamMemberCounter teamMemberCounter;
+    private final TeamAgeSummary teamAgeSummary;
+
+    //팀별 회원 수. member count 쿼리나 Team.members 초기화 없이 team 테이블만 읽는다.
+    @QueryBudget(1)
+    @GetMapping("/teams/member-counts")
+    public Map<Long, Long> memberCounts() {
+        return teamMemberCounter.getMemberCounts();
+    }
+
+    @QueryBudget(1)
+    @GetMapping("/teams/{id}/member-count")
+    public long memberCount(@PathVariable("id") Long id) {
+        return teamMemberCounter.getMemberCount(id);
+    }
+
+    @GetMapping("/teams/member-count-stats")
+    public Map<String, Long> memberCountStats() {
+        final Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("flushed", teamMemberCounter.getFlushedCount());
+        stats.put("repaired", teamMemberCounter.getRepairedCount());
+        return stats;
+    }
+
+    //팀별 회원 수, 평균 나이, 나이 구간별 회원 수. group by 없이 메모리에서 조회한다.
+    @QueryBudget(0)
+    @GetMapping("/teams/age-stats")
+    public List<TeamAgeStatsDto> ageStats() {
+        return teamAgeSummary.getAllTeamStats();
+    }
+
+    @QueryBudget(0)
+    @GetMapping("/teams/{id}/age-stats")
+    public TeamAgeStatsDto ageStats(@PathVariable("id") Long id) {
+        return teamAgeSummary.getTeamStats(id);
+    }
+
+    //실제 group by 와 비교. 다른 칸 수
+    @GetMapping("/teams/age-stats/check")
+    public Map<String, Long> checkAgeStats() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        result.put("mismatches", (long) teamAgeSummary.check());
+        result.put("totalMismatches", teamAgeSummary.getMismatchCount());
+        result.put("rebuilds", teamAgeSummary.getRebuildCount());
+        return result;
+    }
+
+    @PostMapping("/teams/age-stats/rebuild")
+    public Map<String, Long> rebuildAgeStats() {
+        teamAgeSummary.rebuild();
+        return checkAgeStats();
+    }
+}
@@ -0,0 +1,62 @@
+package study.datajpa2.datasource;
+
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.dialect.H2Dialect;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * H2Dialect 는 lock timeout 힌트를 무시하고 항상 "for update" 만 붙인다.
+ * H2 2.2 부터 지원하는 SKIP LOCKED, NOWAIT 을 javax.persistence.lock.timeout 힌트(-2, 0)로 사용할 수 있게 한다.
+ *
+ * H2 는 조건으로 인덱스를 탐색할 때 SKIP LOCKED 를 만나면 잠기지 않은 row 까지 건너뛰어 아무것도 돌려주지 않는다.
+ * 그래서 SKIP LOCKED 일 때는 잠그는 테이블에 "use index ()" 를 붙여 테이블을 스캔하게 한다.
+ */
+public class H2LockDialect extends H2Dialect {
+
+    @Override
+    public String getWriteLockString(int timeout) {
+        if (timeout == LockOptions.SKIP_LOCKED) {
+            return getForUpdateSkipLockedString();
+        }
+        if (timeout == LockOptions.NO_WAIT) {
+            return getForUpdateNowaitString();
+        }
+        return super.getWriteLockString(timeout);
+    }
+
+    @Override
+    public String applyLocksToSql(String sql, LockOptions aliasedLockOptions, Map<String, String[]> keyColumnNames) {
+        String locked = super.applyLocksToSql(sql, aliasedLockOptions, keyColumnNames);
+        if (aliasedLockOptions.getTimeOut() != LockOptions.SKIP_LOCKED) {
+            return locked;
+        }
+        final Iterator<Map.Entry<String, LockMode>> aliases = aliasedLockOptions.getAliasLockIterator();
+        while (aliases.hasNext()) {
+            final String alias = aliases.next().getKey();
+            //"member0_.username" 같은 컬럼 참조가 아니라 from 절의 "member member0_" 선언 뒤에 붙인다.
+            locked = locked.replaceFirst("\\b" + Pattern.quote(alias) + "(?![.\\w])",
+                    Matcher.quoteReplacement(alias + " use index ()"));
+        }
+        return locked;
+    }
+
+    @Override
+    public String getForUpdateSkipLockedString() {
+        return " for update skip locked";
+    }
+
+    @Override
+    public String getForUpdateNowaitString() {
+        return " for update nowait";
+    }
+
+    @Override
+    public boolean supportsSkipLocked() {
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package study.datajpa2.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@ConfigurationProperties("replica")
+public class ReplicaProperties {
+
+    private boolean enabled;
+
+    //이보다 지연된 replica 는 사용하지 않는다.
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    //같은 쓰레드에서 쓰기 트랜잭션 후 이 시간 동안은 읽기 전용 트랜잭션도 primary 로 보낸다. 0 이면 바로 replica
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    //replica 상태(연결, 지연)를 확인하는 주기
+    private Duration checkInterval = Duration.ofSeconds(10);
+
+    //지연 시간(초)을 숫자 하나로 반환하는 쿼리. 없으면 연결만 확인한다.
+    private String lagQuery;
+
+    private List<Replica> datasources = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
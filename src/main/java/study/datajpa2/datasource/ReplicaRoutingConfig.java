@@ -0,0 +1,58 @@
+package study.datajpa2.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * replica.enabled=true 이면 spring.datasource 를 primary 로, replica.datasources 를 읽기 전용 replica 로 사용한다.
+ * DataSource 빈을 직접 등록하므로 스프링 부트의 DataSource 자동 설정은 동작하지 않는다.
+ * replica 프로필(application-replica.yml)로 켠다. 프로필에는 이 설정에만 필요한 값이 들어 있다.
+ * - p6spy 는 LazyConnectionDataSourceProxy 안쪽의 replicaRoutingDataSource 만 감싸도록 나머지 두 빈을 decorator.datasource.exclude-beans 에 등록
+ * - OSIV 라도 트랜잭션마다 커넥션을 다시 얻도록 hibernate.connection.handling_mode
+ */
+@Configuration
+@ConditionalOnProperty(name = "replica.enabled", havingValue = "true")
+@EnableConfigurationProperties({ReplicaProperties.class, DataSourceProperties.class})
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource, ReplicaProperties properties) {
+        final List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getDatasources().size(); i++) {
+            final ReplicaProperties.Replica replica = properties.getDatasources().get(i);
+            final HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername());
+            dataSource.setPassword(replica.getPassword());
+            dataSource.setReadOnly(true);
+            replicas.add(new ReplicaRoutingDataSource.Replica("replica-" + i, dataSource));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                properties.getMaxLag(), properties.getCheckInterval(), properties.getLagQuery(),
+                properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,198 @@
+package study.datajpa2.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 읽기 전용 트랜잭션이면 replica 중 하나(라운드로빈), 아니면 primary 커넥션을 준다.
+ * 트랜잭션 속성이 정해진 뒤에 커넥션을 얻어야 하므로 LazyConnectionDataSourceProxy 로 감싸서 사용한다.
+ *
+ * 주기적으로 replica 에 연결하고 lagQuery 로 지연을 확인해서 maxLag 를 넘거나 실패한 replica 는 제외한다.
+ * 사용할 수 있는 replica 가 없거나 replica 연결에 실패하면 primary 를 사용한다.
+ *
+ * replica 는 primary 보다 늦으므로 같은 쓰레드에서 쓰기 트랜잭션을 시작한 뒤 readYourWritesWindow 동안은
+ * 읽기 전용 트랜잭션도 primary 로 보낸다. (방금 저장한 데이터를 바로 다시 조회하는 경우)
+ * 쓰레드 기준이라 다른 쓰레드(@Async, 다른 요청)에서 읽으면 replica 에서 이전 값이 보일 수 있다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean, DisposableBean {
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final String lagQuery;
+    private final Duration readYourWritesWindow;
+
+    //이 쓰레드에서 마지막으로 쓰기 트랜잭션 커넥션을 얻은 시각 (System.nanoTime)
+    private final ThreadLocal<Long> lastWriteAt = new ThreadLocal<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaConnections = new AtomicLong();
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas,
+                                    Duration maxLag, Duration checkInterval, String lagQuery, Duration readYourWritesWindow) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.lagQuery = lagQuery;
+        this.readYourWritesWindow = readYourWritesWindow;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                lastWriteAt.set(System.nanoTime());
+            }
+        } else if (!wroteRecently()) {
+            final Replica replica = nextReplica();
+            if (replica != null) {
+                try {
+                    final Connection connection = connect(replica.dataSource, username, password);
+                    replicaConnections.incrementAndGet();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.available = false;
+                    log.warn("replica {} unavailable, fallback to primary", replica.name, e);
+                }
+            }
+        }
+        primaryConnections.incrementAndGet();
+        return connect(primary, username, password);
+    }
+
+    private boolean wroteRecently() {
+        final Long writeAt = lastWriteAt.get();
+        if (writeAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - writeAt < readYourWritesWindow.toNanos()) {
+            return true;
+        }
+        lastWriteAt.remove();
+        return false;
+    }
+
+    //이 쓰레드의 최근 쓰기 기록을 지운다. 이후 읽기 전용 트랜잭션은 바로 replica 로 간다.
+    public void forgetRecentWrite() {
+        lastWriteAt.remove();
+    }
+
+    private Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    private Replica nextReplica() {
+        final int size = replicas.size();
+        for (int i = 0; i < size; i++) {
+            final Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), size));
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                final double lagSeconds = lagSeconds(connection);
+                replica.available = lagSeconds * 1000 <= maxLag.toMillis();
+                if (!replica.available) {
+                    log.warn("replica {} lag {}s exceeds {}", replica.name, lagSeconds, maxLag);
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.available = false;
+                log.warn("replica {} check failed", replica.name, e);
+            }
+        }
+    }
+
+    private double lagSeconds(Connection connection) throws SQLException {
+        if (lagQuery == null || lagQuery.isBlank()) {
+            return 0;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            return rs.next() ? rs.getDouble(1) : 0;
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        checkReplicas();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "replica-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkReplicas,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        //primary 는 빈으로 등록되어 있어서 스프링이 닫는다.
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+    }
+
+    public long getReplicaConnections() {
+        return replicaConnections.get();
+    }
+
+    public long getPrimaryConnections() {
+        return primaryConnections.get();
+    }
+
+    public static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available = true;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+    }
+}
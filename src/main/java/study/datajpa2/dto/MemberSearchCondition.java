@@ -0,0 +1,18 @@
+package study.datajpa2.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//회원 검색 조건. null 이거나 빈 문자열인 조건은 적용하지 않는다.
+@Data
+@NoArgsConstructor
+public class MemberSearchCondition {
+
+    private String username;
+    private String teamName;
+
+    public MemberSearchCondition(String username, String teamName) {
+        this.username = username;
+        this.teamName = teamName;
+    }
+}
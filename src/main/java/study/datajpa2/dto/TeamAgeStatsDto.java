@@ -0,0 +1,22 @@
+package study.datajpa2.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class TeamAgeStatsDto {
+
+    private Long teamId;
+    private long memberCount;
+    private double averageAge;
+    //나이 구간 시작값 -> 회원 수
+    private Map<Integer, Long> ageDistribution;
+
+    public TeamAgeStatsDto(Long teamId, long memberCount, double averageAge, Map<Integer, Long> ageDistribution) {
+        this.teamId = teamId;
+        this.memberCount = memberCount;
+        this.averageAge = averageAge;
+        this.ageDistribution = ageDistribution;
+    }
+}
@@ -0,0 +1,15 @@
+package study.datajpa2.dto;
+
+import lombok.Data;
+
+@Data
+public class UsernameMatchDto {
+
+    private Long id;
+    private String username;
+
+    public UsernameMatchDto(Long id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+}
@@ -1,37 +1,46 @@
 package study.datajpa2.entity;
 
 import lombok.Getter;
-import org.springframework.data.annotation.CreatedBy;
-import org.springframework.data.annotation.CreatedDate;
-import org.springframework.data.annotation.LastModifiedBy;
-import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
 import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 import java.time.LocalDateTime;
 
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners(BaseEntityAuditingListener.class)
 @MappedSuperclass
 @Getter
 public class BaseEntity {
 
     //등록일시
-    @CreatedDate
     @Column(updatable = false) //수정이 안일어나게 (다른 데이터로 바뀔수있어서 false로 둠)
     private LocalDateTime createDate;
 
     //수정일시
-    @LastModifiedDate
     private LocalDateTime lastModifiedDate;
 
     //등록자
-    @CreatedBy
     @Column(updatable = false) //수정이 안일어나게 (다른 데이터로 바뀔수있어서 false로 둠)
     private String createdBy;
 
     //수정자
-    @LastModifiedBy
     private String lastModifiedBy;
+
+    //낙관적 락. 수정할 때 where version = ? 로 확인해서 다른 트랜잭션이 먼저 수정했으면 OptimisticLockException
+    @Version
+    private Long version;
+
+    //BaseEntityAuditingListener 에서 호출. 등록할 때 수정일시, 수정자도 같이 채운다.
+    void markCreated(String auditor, LocalDateTime now) {
+        this.createDate = now;
+        this.createdBy = auditor;
+        this.lastModifiedDate = now;
+        this.lastModifiedBy = auditor;
+    }
+
+    void markModified(String auditor, LocalDateTime now) {
+        this.lastModifiedDate = now;
+        this.lastModifiedBy = auditor;
+    }
 }
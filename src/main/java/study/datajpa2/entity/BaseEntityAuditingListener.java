@@ -0,0 +1,31 @@
+package study.datajpa2.entity;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.AuditorAware;
+import study.datajpa2.auditing.AuditingClock;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.time.LocalDateTime;
+
+//AuditingEntityListener 는 엔티티마다 메타데이터로 필드를 찾아서 값을 넣는다. BaseEntity 는 필드가 정해져 있으므로 바로 넣는다.
+@RequiredArgsConstructor
+public class BaseEntityAuditingListener {
+
+    private final AuditorAware<String> auditorAware;
+    private final AuditingClock auditingClock;
+
+    @PrePersist
+    public void prePersist(BaseEntity entity) {
+        entity.markCreated(auditor(), auditingClock.now());
+    }
+
+    @PreUpdate
+    public void preUpdate(BaseEntity entity) {
+        entity.markModified(auditor(), auditingClock.now());
+    }
+
+    private String auditor() {
+        return auditorAware.getCurrentAuditor().orElse(null);
+    }
+}
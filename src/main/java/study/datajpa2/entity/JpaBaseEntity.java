@@ -3,11 +3,11 @@ package study.datajpa2.entity;
 import lombok.Getter;
 
 import javax.persistence.Column;
+import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
-import javax.persistence.PrePersist;
-import javax.persistence.PreUpdate;
 import java.time.LocalDateTime;
 
+@EntityListeners(JpaBaseEntityAuditingListener.class)
 @MappedSuperclass
 @Getter
 public class JpaBaseEntity {
@@ -16,15 +16,13 @@ public class JpaBaseEntity {
     private LocalDateTime createdDate;
     private LocalDateTime updateDate;
 
-    @PrePersist
-    public void prePersist() {
-        LocalDateTime now = LocalDateTime.now();
+    //JpaBaseEntityAuditingListener 에서 호출
+    void markCreated(LocalDateTime now) {
         createdDate = now;
         updateDate = now;
     }
 
-    @PreUpdate
-    public void preUpdate() {
-        updateDate = LocalDateTime.now();
+    void markUpdated(LocalDateTime now) {
+        updateDate = now;
     }
 }
@@ -0,0 +1,24 @@
+package study.datajpa2.entity;
+
+import lombok.RequiredArgsConstructor;
+import study.datajpa2.auditing.AuditingClock;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+//엔티티 콜백은 빈을 주입받을 수 없으므로 리스너에서 시계를 주입받아 등록일/수정일을 채운다.
+@RequiredArgsConstructor
+public class JpaBaseEntityAuditingListener {
+
+    private final AuditingClock auditingClock;
+
+    @PrePersist
+    public void prePersist(JpaBaseEntity entity) {
+        entity.markCreated(auditingClock.now());
+    }
+
+    @PreUpdate
+    public void preUpdate(JpaBaseEntity entity) {
+        entity.markUpdated(auditingClock.now());
+    }
+}
@@ -1,6 +1,11 @@
 package study.datajpa2.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import study.datajpa2.repository.MemberChangeListener;
 
 import javax.persistence.*;
 
@@ -10,14 +15,31 @@ import javax.persistence.*;
 @ToString(of = {"id", "username", "age"})
 @NamedQuery(
         name = "Member.findByUsername",
-        query = "select m from Member m where m.username = :username"
+        query = "select m from Member m where m.username = :username",
+        hints = {
+                @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                @QueryHint(name = "org.hibernate.cacheRegion", value = "member-by-username")
+        }
 )
 //@NamedEntityGraph는 jpa표준스펙. Member.all = Member에 연관된 애들을 다 가져온다.
 @NamedEntityGraph(name = "Member.all", attributeNodes = @NamedAttributeNode("team"))
+@EntityListeners(MemberChangeListener.class)
+//쿼리 캐시는 id 목록만 저장하므로 엔티티도 캐시해야 조회시 DB를 다시 타지 않는다.
+//벌크 JPQL(bulkAgePlus)을 실행하면 하이버네이트가 member region 과 쿼리 캐시를 무효화한다.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member")
+//allocationSize 만큼 시퀀스를 미리 받아두고(pooled) 메모리에서 id를 할당한다. insert 마다 시퀀스 조회를 하지 않음.
+@SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
+//username 조회(findByUsername, findByUsernameAndAgeGreaterThan, findLockByUsername)는 username_age,
+//나이 조건(findByAge, bulkAgePlus)은 age, 팀 이름 + username 조건(MemberSpec)은 팀에서 조인해 들어오므로 team_id_username.
+@Table(name = "member", indexes = {
+        @Index(name = "idx_member_username_age", columnList = "username, age"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_id_username", columnList = "team_id, username")
+})
 public class Member extends BaseEntity {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -27,6 +49,14 @@ public class Member extends BaseEntity {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    //DB 에 반영된 팀 id, 나이. 변경시 이전 값의 집계를 줄이는데 사용 (TeamMemberCounter, TeamAgeSummary)
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private Long persistedTeamId;
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private int persistedAge;
+
     public Member(String username) {
         this.username = username;
     }
@@ -44,8 +74,30 @@ public class Member extends BaseEntity {
         }
     }
 
+    //프록시를 초기화하지 않고 팀 id 를 꺼낸다.
+    public Long getTeamId() {
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team == null ? null : team.getId();
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void markPersisted() {
+        persistedTeamId = getTeamId();
+        persistedAge = age;
+    }
+
+    //연관관계 주인은 Member.team 이므로 DB 에는 this.team 만 반영된다.
+    //members 가 아직 로딩되지 않았으면 하이버네이트가 add 를 큐에 쌓아두고 컬렉션을 로딩하지 않는다. (mappedBy 쪽 bag)
+    //team 이 초기화되지 않은 프록시일 때만 건드리지 않는다. getMembers() 호출만으로 team 을 조회하기 때문.
+    //그 경우 나중에 members 를 초기화하면 DB 에서 새로 읽고, 2차 캐시는 auto_evict_collection_cache 로 비워진다.
     public void changeTeam(Team team) {
         this.team = team;
-        team.getMembers().add(this);
+        if (team != null && Hibernate.isInitialized(team)) {
+            team.getMembers().add(this);
+        }
     }
 }
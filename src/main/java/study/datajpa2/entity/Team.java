@@ -1,8 +1,12 @@
 package study.datajpa2.entity;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OptimisticLock;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -11,17 +15,30 @@ import java.util.List;
 @Entity
 @Getter @Setter
 @NoArgsConstructor
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+@SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
+@Table(name = "team", indexes = @Index(name = "idx_team_name", columnList = "name"))
 public class Team extends BaseEntity {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
     @Column(name = "team_id")
     private Long id;
     private String name;
 
+    //TeamMemberCounter 가 SQL 로 증감하므로 엔티티 수정시 덮어쓰지 않는다.
+    //엔티티(2차 캐시 포함)의 값은 로딩 시점 값이라 반영 안된 증감이 빠져 있으므로 노출하지 않는다. 조회는 TeamMemberCounter.getMemberCount
+    @Column(updatable = false)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long memberCount;
+
     public Team(String name) {
         this.name = name;
     }
 
+    //연관관계의 주인이 아니므로 회원 추가/팀 변경이 팀의 version 을 올리지 않게 한다. (올리면 같은 팀에 회원을 넣는 트랜잭션끼리 충돌한다)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team-members")
+    @OptimisticLock(excluded = true)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 }
@@ -0,0 +1,17 @@
+package study.datajpa2.querycount;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 핸들러(또는 테스트) 메소드 하나가 실행할 수 있는 SQL 수의 상한.
+ * 컨트롤러에서는 QueryCountInterceptor, 테스트에서는 QueryBudgetExtension 이 검사한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    int value();
+}
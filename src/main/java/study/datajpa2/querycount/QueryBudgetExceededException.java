@@ -0,0 +1,8 @@
+package study.datajpa2.querycount;
+
+public class QueryBudgetExceededException extends RuntimeException {
+
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+}
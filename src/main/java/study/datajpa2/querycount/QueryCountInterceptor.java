@@ -0,0 +1,76 @@
+package study.datajpa2.querycount;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * HTTP 요청 하나에서 실행된 SQL 수를 로그로 남긴다.
+ * 핸들러에 @QueryBudget 이 있으면 초과시 경고하고, fail-on-exceed 가 true 면 초과하는 SQL 을 실행하지 않고 실패시킨다.
+ * 핸들러가 CompletableFuture 를 반환하면(비동기 요청) 결과를 내려주는 async dispatch 가 끝날 때 기록한다.
+ */
+@Slf4j
+@Component
+public class QueryCountInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = QueryCountScope.class.getName();
+
+    @Value("${query-budget.fail-on-exceed:false}")
+    private boolean failOnExceed;
+
+    @Value("${query-budget.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        final QueryCountScope started = (QueryCountScope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (started != null && request.getDispatcherType() == DispatcherType.ASYNC) {
+            started.attach();
+            return true;
+        }
+
+        int budget = -1;
+        if (handler instanceof HandlerMethod) {
+            final QueryBudget queryBudget = ((HandlerMethod) handler).getMethodAnnotation(QueryBudget.class);
+            if (queryBudget != null) {
+                budget = queryBudget.value();
+            }
+        }
+        final String name = request.getMethod() + " " + request.getRequestURI();
+        request.setAttribute(SCOPE_ATTRIBUTE, QueryCountScope.open(name, budget, failOnExceed));
+        return true;
+    }
+
+    //서블릿 쓰레드는 반환되므로 scope 를 떼어내기만 하고 요청 attribute 에는 남겨둔다.
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        final QueryCountScope scope = (QueryCountScope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        final QueryCountScope scope = (QueryCountScope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope == null) {
+            return;
+        }
+        scope.close();
+
+        log.debug("{} executed {} statements", scope.getName(), scope.getTotal());
+        if (scope.isOverBudget()) {
+            log.warn("{} executed {} statements, budget is {}", scope.getName(), scope.getTotal(), scope.getBudget());
+        }
+        for (Map.Entry<String, Integer> entry : scope.getRepeatedStatements(nPlusOneThreshold).entrySet()) {
+            log.warn("{} possible N+1, executed {} times: {}", scope.getName(), entry.getValue(), entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package study.datajpa2.querycount;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+//p6spy-spring-boot-starter 가 JdbcEventListener 빈을 DataSource 데코레이터에 등록해준다.
+@Component
+public class QueryCountListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onBeforeAnyExecute(StatementInformation statementInformation) {
+        final QueryCountScope scope = QueryCountScope.current();
+        if (scope != null) {
+            scope.beforeExecute(statementInformation.getSql());
+        }
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        final QueryCountScope scope = QueryCountScope.current();
+        if (scope != null) {
+            scope.record(statementInformation.getSql());
+        }
+    }
+}
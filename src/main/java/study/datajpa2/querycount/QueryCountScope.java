@@ -0,0 +1,137 @@
+package study.datajpa2.querycount;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 현재 쓰레드에서 실행된 SQL 수를 센다. HTTP 요청 안에서 리포지토리 메소드를 호출하는 것처럼
+ * scope 가 중첩되면 바깥 scope 에도 같이 기록된다.
+ * SQL 은 파라미터가 ? 인 상태로 모으기 때문에 같은 문장이 파라미터만 바뀌어서 반복되면(N+1) 한 key 로 모인다.
+ */
+public class QueryCountScope {
+
+    private static final ThreadLocal<QueryCountScope> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final QueryCountScope parent;
+    private final int budget;
+    private final boolean failFast;
+
+    private int total;
+    private final Map<String, Integer> statements = new LinkedHashMap<>();
+
+    private QueryCountScope(String name, QueryCountScope parent, int budget, boolean failFast) {
+        this.name = name;
+        this.parent = parent;
+        this.budget = budget;
+        this.failFast = failFast;
+    }
+
+    public static QueryCountScope open(String name) {
+        return open(name, -1, false);
+    }
+
+    /**
+     * @param budget   허용하는 SQL 수. 음수면 제한 없음
+     * @param failFast true 면 budget 을 넘는 SQL 을 실행하기 전에 QueryBudgetExceededException
+     */
+    public static QueryCountScope open(String name, int budget, boolean failFast) {
+        final QueryCountScope scope = new QueryCountScope(name, CURRENT.get(), budget, failFast);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static QueryCountScope current() {
+        return CURRENT.get();
+    }
+
+    //비동기 요청 처리로 쓰레드가 바뀌었을 때 이 scope 를 현재 쓰레드에 다시 연결한다.
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 다른 쓰레드에서 실행할 작업도 현재 scope 에 기록되게 한다.
+     * scope 는 동기화하지 않으므로 같은 scope 의 작업을 여러 쓰레드에서 동시에 실행하면 안된다.
+     */
+    public static Runnable propagate(Runnable task) {
+        final QueryCountScope scope = CURRENT.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            final QueryCountScope previous = CURRENT.get();
+            scope.attach();
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    //안쪽 scope 를 닫지 않은 채 바깥 scope 를 닫거나 다른 쓰레드에서 닫으면 엉뚱한 scope 를 되돌리게 되므로 예외
+    public void close() {
+        final QueryCountScope current = CURRENT.get();
+        if (current != this) {
+            throw new IllegalStateException("Cannot close " + name + ", current scope is "
+                    + (current == null ? "none" : current.name));
+        }
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    void beforeExecute(String sql) {
+        for (QueryCountScope scope = this; scope != null; scope = scope.parent) {
+            if (scope.failFast && scope.isOverBudget(scope.total + 1)) {
+                throw new QueryBudgetExceededException(
+                        scope.name + " exceeded query budget " + scope.budget + ", sql: " + sql);
+            }
+        }
+    }
+
+    void record(String sql) {
+        for (QueryCountScope scope = this; scope != null; scope = scope.parent) {
+            scope.total++;
+            scope.statements.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    public boolean isOverBudget() {
+        return isOverBudget(total);
+    }
+
+    private boolean isOverBudget(int count) {
+        return budget >= 0 && count > budget;
+    }
+
+    //threshold 번 이상 반복된 SQL. N+1 후보
+    public Map<String, Integer> getRepeatedStatements(int threshold) {
+        final Map<String, Integer> repeated = new LinkedHashMap<>();
+        statements.forEach((sql, count) -> {
+            if (count >= threshold) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,59 @@
+package study.datajpa2.querycount;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MemberRepository 메소드별 호출 수와 실행된 SQL 수를 모은다.
+ * 한번 호출에서 같은 SQL 이 반복되면 N+1 경고를 남긴다.
+ */
+@Slf4j
+@Aspect
+@Component
+public class RepositoryQueryStats {
+
+    private final ConcurrentHashMap<String, MethodStats> stats = new ConcurrentHashMap<>();
+
+    @Value("${query-budget.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    //JpaRepository 에서 상속받은 메소드도 포함하려고 프록시 타입(this)으로 매칭한다.
+    @Around("this(study.datajpa2.repository.MemberRepository) && execution(* *(..))")
+    public Object count(ProceedingJoinPoint joinPoint) throws Throwable {
+        final String method = "MemberRepository." + joinPoint.getSignature().getName();
+        final QueryCountScope scope = QueryCountScope.open(method);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            scope.close();
+            final MethodStats methodStats = stats.computeIfAbsent(method, key -> new MethodStats());
+            methodStats.invocations.increment();
+            methodStats.statements.add(scope.getTotal());
+            for (Map.Entry<String, Integer> entry : scope.getRepeatedStatements(nPlusOneThreshold).entrySet()) {
+                log.warn("{} possible N+1, executed {} times: {}", method, entry.getValue(), entry.getKey());
+            }
+        }
+    }
+
+    //메소드명 -> [호출 수, SQL 수]
+    public Map<String, long[]> getStats() {
+        final Map<String, long[]> result = new TreeMap<>();
+        stats.forEach((method, methodStats) ->
+                result.put(method, new long[]{methodStats.invocations.sum(), methodStats.statements.sum()}));
+        return result;
+    }
+
+    private static class MethodStats {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+    }
+}
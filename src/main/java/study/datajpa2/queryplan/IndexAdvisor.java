@@ -0,0 +1,146 @@
+package study.datajpa2.queryplan;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 실행된 SQL 의 조건 컬럼(PredicateShape)과 결과 row 수를 모아서 인덱스가 없는 조건에 인덱스를 추천한다.
+ * SQL 은 IndexAdvisorListener(p6spy)가 넘겨준다. 같은 SQL 은 한번만 해석한다.
+ * 해석 결과는 SQL 문자열로 캐시하는데, 리터럴을 이어붙인 SQL 은 값마다 다른 문자열이므로 max-cached-sql 개까지만 캐시하고 그 뒤로는 매번 해석한다.
+ *
+ * 인덱스의 첫번째 컬럼이 등호 조건 컬럼(없으면 범위 조건 컬럼)이면 이미 인덱스가 있다고 본다.
+ * 효과는 인덱스가 없을 때 읽는 row(테이블 전체)와 실제 필요한 row 의 차이로 추정한다.
+ */
+@Component
+public class IndexAdvisor {
+
+    //DataSource 를 p6spy 로 감쌀 때 IndexAdvisorListener 가 만들어지므로 JdbcTemplate(DataSource)은 나중에 꺼낸다.
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final int minExecutions;
+    private final int maxCachedSql;
+
+    private final ConcurrentHashMap<String, List<PredicateShape>> shapesBySql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PredicateShape, ShapeStats> stats = new ConcurrentHashMap<>();
+
+    public IndexAdvisor(ObjectProvider<JdbcTemplate> jdbcTemplate,
+                        @Value("${index-advisor.min-executions:10}") int minExecutions,
+                        @Value("${index-advisor.max-cached-sql:1000}") int maxCachedSql) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.minExecutions = minExecutions;
+        this.maxCachedSql = maxCachedSql;
+    }
+
+    void record(String sql, long rows) {
+        List<PredicateShape> shapes = shapesBySql.get(sql);
+        if (shapes == null) {
+            shapes = isAdvisable(sql) ? PredicateShape.parse(sql) : List.of();
+            //동시에 넣으면 조금 넘을 수 있지만 상한 근처에서 멈춘다.
+            if (shapesBySql.size() < maxCachedSql) {
+                shapesBySql.putIfAbsent(sql, shapes);
+            }
+        }
+        for (PredicateShape shape : shapes) {
+            stats.computeIfAbsent(shape, key -> new ShapeStats()).add(rows);
+        }
+    }
+
+    //메타데이터 조회나 EXPLAIN 은 기록하지 않는다.
+    private static boolean isAdvisable(String sql) {
+        final String lower = sql.trim().toLowerCase(Locale.ROOT);
+        return !lower.startsWith("explain") && !lower.contains("information_schema");
+    }
+
+    public List<IndexRecommendation> advise() {
+        final Map<String, Long> tableRows = tableRows();
+        final Map<String, List<List<String>>> indexes = new HashMap<>();
+        final List<IndexRecommendation> recommendations = new ArrayList<>();
+
+        stats.forEach((shape, shapeStats) -> {
+            final long executions = shapeStats.executions.sum();
+            if (executions < minExecutions) {
+                return;
+            }
+            final List<List<String>> tableIndexes = indexes.computeIfAbsent(shape.getTable(), this::indexColumns);
+            if (isCovered(shape, tableIndexes)) {
+                return;
+            }
+            final double averageRows = (double) shapeStats.rows.sum() / executions;
+            final long rows = tableRows.getOrDefault(shape.getTable(), 0L);
+            final long saved = (long) (executions * Math.max(0, rows - averageRows));
+            recommendations.add(new IndexRecommendation(shape.getTable(), shape.getIndexColumns(),
+                    executions, averageRows, rows, saved));
+        });
+
+        recommendations.sort(Comparator.comparingLong(IndexRecommendation::getEstimatedRowsSaved).reversed());
+        return recommendations;
+    }
+
+    public void reset() {
+        stats.clear();
+        shapesBySql.clear();
+    }
+
+    int cachedSqlCount() {
+        return shapesBySql.size();
+    }
+
+    private static boolean isCovered(PredicateShape shape, List<List<String>> indexes) {
+        for (List<String> index : indexes) {
+            final String leading = index.get(0);
+            if (shape.getEqualityColumns().contains(leading)
+                    || (shape.getEqualityColumns().isEmpty() && shape.getRangeColumns().contains(leading))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Long> tableRows() {
+        final Map<String, Long> rows = new HashMap<>();
+        jdbcTemplate.getObject().query(
+                "select table_name, row_count_estimate from information_schema.tables where table_schema = 'PUBLIC'",
+                (RowCallbackHandler) rs -> rows.put(rs.getString(1).toLowerCase(Locale.ROOT), rs.getLong(2)));
+        return rows;
+    }
+
+    //인덱스 이름별 컬럼 목록(순서대로)
+    private List<List<String>> indexColumns(String table) {
+        return jdbcTemplate.getObject().execute((ConnectionCallback<List<List<String>>>) connection -> {
+            final Map<String, List<String>> columns = new HashMap<>();
+            try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, table.toUpperCase(Locale.ROOT), false, true)) {
+                while (rs.next()) {
+                    final String column = rs.getString("COLUMN_NAME");
+                    if (column != null) {
+                        columns.computeIfAbsent(rs.getString("INDEX_NAME"), key -> new ArrayList<>())
+                                .add(column.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return new ArrayList<>(columns.values());
+        });
+    }
+
+    private static class ShapeStats {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        private void add(long rowCount) {
+            executions.increment();
+            rows.add(rowCount);
+        }
+    }
+}
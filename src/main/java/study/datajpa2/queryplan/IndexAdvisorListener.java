@@ -0,0 +1,31 @@
+package study.datajpa2.queryplan;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+//조회는 ResultSet 을 닫을 때 읽은 row 수로, 수정은 executeUpdate 결과 row 수로 기록한다.
+@Component
+@RequiredArgsConstructor
+public class IndexAdvisorListener extends JdbcEventListener {
+
+    private final IndexAdvisor indexAdvisor;
+
+    @Override
+    public void onAfterResultSetClose(ResultSetInformation resultSetInformation, SQLException e) {
+        final StatementInformation statementInformation = resultSetInformation.getStatementInformation();
+        //currRow 는 -1 부터 시작해서 next() 로 row 를 읽을 때마다 증가한다.
+        indexAdvisor.record(statementInformation.getSql(), Math.max(0, resultSetInformation.getCurrRow() + 1));
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos,
+                                     int rowCount, SQLException e) {
+        indexAdvisor.record(statementInformation.getSql(), rowCount);
+    }
+}
@@ -0,0 +1,26 @@
+package study.datajpa2.queryplan;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class IndexRecommendation {
+
+    private final String table;
+    private final List<String> columns;
+    private final long executions;
+    //실행 한번에 반환/수정한 평균 row 수
+    private final double averageRows;
+    //H2 row 추정치
+    private final long tableRows;
+    //인덱스가 있으면 읽지 않아도 되는 row 수 추정. executions * (tableRows - averageRows)
+    private final long estimatedRowsSaved;
+
+    public String getDdl() {
+        return "create index idx_" + table + "_" + String.join("_", columns)
+                + " on " + table + " (" + String.join(", ", columns) + ")";
+    }
+}
@@ -0,0 +1,117 @@
+package study.datajpa2.queryplan;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQL 의 WHERE 절에서 테이블별로 조건에 사용된 컬럼. 같은 모양의 조건은 같은 인덱스로 처리할 수 있다.
+ * 하이버네이트가 만드는 SQL(별칭.컬럼=?)과 단순한 네이티브 쿼리만 해석한다. 서브쿼리, 함수 조건은 무시.
+ */
+@Getter
+@EqualsAndHashCode
+public class PredicateShape {
+
+    private static final Pattern TABLE = Pattern.compile("\\b(?:from|join|update)\\s+(\\w+)(?:\\s+(?:as\\s+)?(\\w+))?");
+    private static final Pattern PREDICATE = Pattern.compile(
+            "(?:(\\w+)\\.)?(\\w+)\\s*(=|<>|!=|>=|<=|>|<|\\s+not\\s+in\\b|\\s+in\\b|\\s+like\\b|\\s+between\\b)\\s*(\\(?\\s*\\?|'|\\d)");
+    private static final Pattern WHERE = Pattern.compile("\\swhere\\s");
+    private static final Pattern WHERE_END = Pattern.compile("\\b(?:order\\s+by|group\\s+by|limit|offset|fetch|for\\s+update)\\b");
+    private static final Set<String> KEYWORDS = Set.of("where", "left", "right", "inner", "outer", "cross", "join",
+            "on", "set", "order", "group", "limit", "offset", "for", "fetch");
+
+    private final String table;
+    //등호, in 조건 컬럼. 인덱스 앞쪽에 둔다.
+    private final Set<String> equalityColumns;
+    //범위, like 조건 컬럼
+    private final Set<String> rangeColumns;
+
+    PredicateShape(String table, Set<String> equalityColumns, Set<String> rangeColumns) {
+        this.table = table;
+        this.equalityColumns = Collections.unmodifiableSet(equalityColumns);
+        this.rangeColumns = Collections.unmodifiableSet(rangeColumns);
+    }
+
+    //추천할 인덱스 컬럼 순서. 등호 조건 컬럼 다음에 범위 조건 컬럼 하나
+    public List<String> getIndexColumns() {
+        final List<String> columns = new ArrayList<>(equalityColumns);
+        if (!rangeColumns.isEmpty()) {
+            columns.add(rangeColumns.iterator().next());
+        }
+        return columns;
+    }
+
+    public static List<PredicateShape> parse(String sql) {
+        final String lower = sql.toLowerCase(Locale.ROOT);
+        final Matcher whereMatcher = WHERE.matcher(lower);
+        if (!whereMatcher.find()) {
+            return Collections.emptyList();
+        }
+        final int where = whereMatcher.start();
+
+        final Map<String, String> aliases = new HashMap<>();
+        String firstTable = null;
+        final Matcher tableMatcher = TABLE.matcher(lower.substring(0, where));
+        while (tableMatcher.find()) {
+            final String table = tableMatcher.group(1);
+            final String alias = tableMatcher.group(2);
+            aliases.put(table, table);
+            if (alias != null && !KEYWORDS.contains(alias)) {
+                aliases.put(alias, table);
+            }
+            if (firstTable == null) {
+                firstTable = table;
+            }
+        }
+        if (firstTable == null) {
+            return Collections.emptyList();
+        }
+
+        String condition = lower.substring(whereMatcher.end());
+        final Matcher end = WHERE_END.matcher(condition);
+        if (end.find()) {
+            condition = condition.substring(0, end.start());
+        }
+
+        final Map<String, Set<String>> equality = new LinkedHashMap<>();
+        final Map<String, Set<String>> range = new LinkedHashMap<>();
+        final Matcher predicate = PREDICATE.matcher(condition);
+        while (predicate.find()) {
+            //별칭이 없으면 첫번째 테이블 컬럼으로 본다.
+            final String table = predicate.group(1) == null ? firstTable : aliases.get(predicate.group(1));
+            if (table == null) {
+                continue;
+            }
+            final String operator = predicate.group(3).trim();
+            final boolean isEquality = operator.equals("=") || operator.equals("in");
+            (isEquality ? equality : range).computeIfAbsent(table, key -> new LinkedHashSet<>()).add(predicate.group(2));
+        }
+
+        final Set<String> tables = new LinkedHashSet<>(equality.keySet());
+        tables.addAll(range.keySet());
+        final List<PredicateShape> shapes = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            final Set<String> rangeColumns = new LinkedHashSet<>(range.getOrDefault(table, Collections.emptySet()));
+            final Set<String> equalityColumns = equality.getOrDefault(table, new LinkedHashSet<>());
+            rangeColumns.removeAll(equalityColumns);
+            shapes.add(new PredicateShape(table, equalityColumns, rangeColumns));
+        }
+        return shapes;
+    }
+
+    @Override
+    public String toString() {
+        return table + getIndexColumns();
+    }
+}
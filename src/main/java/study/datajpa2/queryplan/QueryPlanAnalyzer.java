@@ -0,0 +1,257 @@
+package study.datajpa2.queryplan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+import study.datajpa2.querycount.QueryCountScope;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 스프링 데이터 리포지토리의 쿼리 메소드(@Query, 네임드 쿼리, 메소드 이름 쿼리)를 모두 EXPLAIN 해서
+ * 카테시안 조인, 인덱스를 못 타는 조건, 전체 스캔을 찾는다.
+ *
+ * 쿼리 메소드를 더미 파라미터로 롤백 트랜잭션 안에서 실행하고, 실행된 SQL 을 p6spy(QueryCountScope) 로 모아서
+ * 같은 트랜잭션에서 EXPLAIN 한다. 메소드 이름 쿼리도 실제 SQL 로 검사할 수 있다. (p6spy 가 꺼져 있으면 모을 SQL 이 없다)
+ * 실행해도 부작용이 없는 조회만 실행한다.
+ * - @Modifying 은 롤백해도 이벤트, 캐시 무효화가 일어나고 @Lock 은 다른 트랜잭션을 막으므로 실행하지 않는다. (SKIPPED)
+ * - 커스텀 구현(fragment) 메소드는 쿼리 메소드가 아니므로 실행하지 않는다.
+ * - 2차 캐시, 쿼리 캐시는 CacheMode.IGNORE 로 읽지도 쓰지도 않는다. 캐시에서 결과를 가져오면 SQL 도 실행되지 않는다.
+ * 실행 계획은 H2 의 EXPLAIN 결과 형식을 기준으로 해석한다.
+ */
+@Slf4j
+@Component
+public class QueryPlanAnalyzer {
+
+    //FROM "PUBLIC"."MEMBER" "M" /* PUBLIC.MEMBER.tableScan */
+    private static final Pattern TABLE_ACCESS = Pattern.compile(
+            "\\b(FROM|JOIN|UPDATE)\\s+(?:\"?\\w+\"?\\.)?\"?(\\w+)\"?(?:\\s+\"?(\\w+)\"?)?\\s*/\\*\\s*([^*]*?)\\s*\\*/");
+    private static final Pattern JOIN_CONDITION = Pattern.compile("\\bON\\s+(?!1\\s*=\\s*1\\b|TRUE\\b)");
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b");
+
+    private final ListableBeanFactory beanFactory;
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${query-plan.analyze-on-startup:false}")
+    private boolean analyzeOnStartup;
+
+    @Value("${query-plan.fail-on-warning:false}")
+    private boolean failOnWarning;
+
+    public QueryPlanAnalyzer(ListableBeanFactory beanFactory, EntityManager em, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager) {
+        this.beanFactory = beanFactory;
+        this.em = em;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (analyzeOnStartup) {
+            report(analyze());
+        }
+    }
+
+    /**
+     * 경고를 로그로 남기고, fail-on-warning 이면 QueryPlanWarningException.
+     */
+    public void report(List<QueryPlanFinding> findings) {
+        for (QueryPlanFinding finding : findings) {
+            if (finding.isWarning()) {
+                log.warn("{}\n{}", finding, finding.getPlan());
+            } else {
+                log.info("{}", finding);
+            }
+        }
+        final List<QueryPlanFinding> warnings = findings.stream()
+                .filter(QueryPlanFinding::isWarning)
+                .collect(Collectors.toList());
+        if (failOnWarning && !warnings.isEmpty()) {
+            throw new QueryPlanWarningException(warnings.size() + " query plan warnings: " + warnings);
+        }
+    }
+
+    public List<QueryPlanFinding> analyze() {
+        final List<QueryPlanFinding> findings = new ArrayList<>();
+        final Repositories repositories = new Repositories(beanFactory);
+        for (Class<?> domainType : repositories) {
+            final RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            final Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+            for (Method method : information.getQueryMethods()) {
+                //Repositories 가 주는 RepositoryInformation 은 fragment 를 몰라서 fragment 인터페이스 메소드(저장 등)도 섞여 있다.
+                if (method.getDeclaringClass() != information.getRepositoryInterface()) {
+                    continue;
+                }
+                final String name = information.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                findings.addAll(analyze(name, repository, method, domainType));
+            }
+        }
+        return findings;
+    }
+
+    private List<QueryPlanFinding> analyze(String name, Object repository, Method method, Class<?> domainType) {
+        final List<QueryPlanFinding> findings = new ArrayList<>();
+        if (hasSideEffects(method)) {
+            findings.add(new QueryPlanFinding(name, QueryPlanFinding.Type.SKIPPED, null, method.toGenericString(), null));
+            return findings;
+        }
+        final QueryCountScope scope = QueryCountScope.open("query-plan " + name);
+        try {
+            //조회만 실행하지만 혹시 모를 변경이 남지 않도록 항상 롤백한다.
+            transactionTemplate.executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                em.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+                ReflectionUtils.invokeMethod(method, repository, arguments(method, domainType));
+                //EXPLAIN 도 p6spy 를 거치므로 먼저 복사해둔다.
+                final List<String> statements = new ArrayList<>(scope.getRepeatedStatements(1).keySet());
+                for (String sql : statements) {
+                    if (isQuery(sql)) {
+                        findings.addAll(inspect(name, sql, explain(sql)));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            findings.add(new QueryPlanFinding(name, QueryPlanFinding.Type.FAILED, null, e.toString(), null));
+        } finally {
+            scope.close();
+        }
+        return findings;
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.query("explain " + sql, ps -> {
+            final int count = ps.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= count; i++) {
+                ps.setObject(i, null);
+            }
+        }, rs -> rs.next() ? rs.getString(1) : "");
+    }
+
+    /**
+     * 실행 계획에서 테이블 접근마다 사용한 인덱스를 확인한다.
+     * 첫번째 테이블이 tableScan 이면 WHERE 가 있을 때 MISSING_INDEX, 없으면 FULL_SCAN.
+     * 조인된 테이블이 tableScan 이면 조인 조건이 있을 때 MISSING_INDEX, 없으면(ON 1=1) CARTESIAN_JOIN.
+     */
+    static List<QueryPlanFinding> inspect(String method, String sql, String plan) {
+        final List<QueryPlanFinding> findings = new ArrayList<>();
+        final Matcher matcher = TABLE_ACCESS.matcher(plan);
+        final List<int[]> ranges = new ArrayList<>();
+        final List<String[]> accesses = new ArrayList<>();
+        while (matcher.find()) {
+            ranges.add(new int[]{matcher.start(), matcher.end()});
+            accesses.add(new String[]{matcher.group(1), matcher.group(2), matcher.group(4)});
+        }
+
+        for (int i = 0; i < accesses.size(); i++) {
+            final String keyword = accesses.get(i)[0];
+            final String table = accesses.get(i)[1];
+            final String index = accesses.get(i)[2];
+            if (!isScan(index)) {
+                continue;
+            }
+
+            if ("JOIN".equals(keyword)) {
+                final int end = i + 1 < ranges.size() ? ranges.get(i + 1)[0] : plan.length();
+                final String condition = plan.substring(ranges.get(i)[1], end);
+                final QueryPlanFinding.Type type = JOIN_CONDITION.matcher(condition).find()
+                        ? QueryPlanFinding.Type.MISSING_INDEX : QueryPlanFinding.Type.CARTESIAN_JOIN;
+                findings.add(new QueryPlanFinding(method, type, table, sql, plan));
+            } else {
+                final QueryPlanFinding.Type type = WHERE.matcher(plan.substring(ranges.get(i)[1])).find()
+                        ? QueryPlanFinding.Type.MISSING_INDEX : QueryPlanFinding.Type.FULL_SCAN;
+                findings.add(new QueryPlanFinding(method, type, table, sql, plan));
+            }
+        }
+        return findings;
+    }
+
+    //H2 2.2 는 조건 없이 인덱스 전체를 읽을 때 tableScan 대신 인덱스 이름만 남긴다. 조건으로 찾을 때는 "인덱스: 조건" 형식이다.
+    private static boolean isScan(String index) {
+        return index.endsWith(".tableScan") || !index.contains(":");
+    }
+
+        private static boolean hasSideEffects(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, Modifying.class)
+                || AnnotatedElementUtils.hasAnnotation(method, Lock.class);
+    }
+
+    private static boolean isQuery(String sql) {
+        final String lower = sql.trim().toLowerCase(Locale.ROOT);
+        return lower.startsWith("select") || lower.startsWith("update") || lower.startsWith("delete");
+    }
+
+    private static Object[] arguments(Method method, Class<?> domainType) {
+        final Class<?>[] types = method.getParameterTypes();
+        final Type[] genericTypes = method.getGenericParameterTypes();
+        final Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            arguments[i] = sample(types[i], genericTypes[i], domainType);
+        }
+        return arguments;
+    }
+
+    //조건 값은 결과와 상관없이 실행 계획만 보므로 아무 값이나 넣는다.
+    private static Object sample(Class<?> type, Type genericType, Class<?> domainType) {
+        if (type == String.class) {
+            return "";
+        }
+        if (type == int.class || type == Integer.class) {
+            return 0;
+        }
+        if (type == long.class || type == Long.class) {
+            return 0L;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return false;
+        }
+        if (Pageable.class.isAssignableFrom(type)) {
+            return PageRequest.of(0, 10);
+        }
+        if (type == Sort.class) {
+            return Sort.unsorted();
+        }
+        //동적 프로젝션은 엔티티 타입으로 조회
+        if (type == Class.class) {
+            return domainType;
+        }
+        if (Collection.class.isAssignableFrom(type) && genericType instanceof ParameterizedType) {
+            final Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                final Object element = sample((Class<?>) elementType, elementType, domainType);
+                return element == null ? Collections.emptyList() : Collections.singletonList(element);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package study.datajpa2.queryplan;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class QueryPlanFinding {
+
+    public enum Type {
+        //조인 조건이 없어서 row 마다 상대 테이블 전체를 읽는다.
+        CARTESIAN_JOIN(true),
+        //조건이 있는데 인덱스를 사용하지 못하고 테이블 전체를 읽는다.
+        MISSING_INDEX(true),
+        //조건 없이 테이블 전체를 읽는다. 전체 조회/count 라면 정상
+        FULL_SCAN(false),
+        //더미 파라미터로 실행하지 못했거나 EXPLAIN 이 실패했다.
+        FAILED(true),
+        //@Modifying, @Lock 처럼 실행하면 데이터를 바꾸거나 락을 잡는 메소드라 실행하지 않았다.
+        SKIPPED(false);
+
+        private final boolean warning;
+
+        Type(boolean warning) {
+            this.warning = warning;
+        }
+
+        public boolean isWarning() {
+            return warning;
+        }
+    }
+
+    private final String method;
+    private final Type type;
+    private final String table;
+    private final String sql;
+    private final String plan;
+
+    public boolean isWarning() {
+        return type.isWarning();
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + method + " (" + table + "): " + sql;
+    }
+}
@@ -0,0 +1,8 @@
+package study.datajpa2.queryplan;
+
+public class QueryPlanWarningException extends RuntimeException {
+
+    public QueryPlanWarningException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,54 @@
+package study.datajpa2.repository;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 엔티티 리스너에서 받은 변경을 트랜잭션이 커밋될 때 호출 순서대로 실행하고 롤백되면 버린다.
+ * 트랜잭션 밖이면 바로 실행한다. owner 마다 트랜잭션에 synchronization 하나를 등록한다.
+ * 같은 Runnable 객체를 연속으로 넘기면 한번만 실행한다. (캐시 비우기처럼 여러번 해도 같은 작업)
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    static void run(Object owner, Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        //REQUIRES_NEW 로 중단된 트랜잭션의 synchronization 은 보이지 않으므로 트랜잭션마다 따로 모인다.
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Changes && ((Changes) synchronization).owner == owner) {
+                final List<Runnable> changes = ((Changes) synchronization).changes;
+                if (changes.get(changes.size() - 1) != change) {
+                    changes.add(change);
+                }
+                return;
+            }
+        }
+        final Changes changes = new Changes(owner);
+        changes.changes.add(change);
+        TransactionSynchronizationManager.registerSynchronization(changes);
+    }
+
+    private static class Changes implements TransactionSynchronization {
+        private final Object owner;
+        private final List<Runnable> changes = new ArrayList<>();
+
+        private Changes(Object owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                changes.forEach(Runnable::run);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa2.dto.MemberDto;
+import study.datajpa2.entity.Member;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 자주 호출되는 조회를 repositoryExecutor 에서 실행한다. 호출한 쓰레드(서블릿 쓰레드)는 JDBC 를 기다리지 않는다.
+ * executor 가 가득 차 있으면 호출 즉시 TaskRejectedException.
+ *
+ * worker 쓰레드의 읽기 전용 트랜잭션에서 실행되므로 반환된 엔티티는 준영속 상태다.
+ * 지연 로딩이 필요한 값은 DTO 로 조회한다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AsyncMemberRepository {
+
+    private final MemberRepository memberRepository;
+    private final PagedMemberRepository pagedMemberRepository;
+
+    @Async(AsyncRepositoryConfig.REPOSITORY_EXECUTOR)
+    @Transactional(readOnly = true)
+    public CompletableFuture<Optional<Member>> findById(Long id) {
+        return CompletableFuture.completedFuture(memberRepository.findById(id));
+    }
+
+    @Async(AsyncRepositoryConfig.REPOSITORY_EXECUTOR)
+    @Transactional(readOnly = true)
+    public CompletableFuture<Page<MemberDto>> findAll(Pageable pageable) {
+        return CompletableFuture.completedFuture(pagedMemberRepository.findMemberDto(pageable));
+    }
+
+    @Async(AsyncRepositoryConfig.REPOSITORY_EXECUTOR)
+    @Transactional(readOnly = true)
+    public CompletableFuture<Page<MemberDto>> findByAge(int age, Pageable pageable) {
+        return CompletableFuture.completedFuture(pagedMemberRepository.findMemberDtoByAge(age, pageable));
+    }
+
+    //조건부 GET 검사용 조회도 서블릿 쓰레드에서 하지 않는다.
+    @Async(AsyncRepositoryConfig.REPOSITORY_EXECUTOR)
+    @Transactional(readOnly = true)
+    public CompletableFuture<Optional<MemberVersion>> findVersionById(Long id) {
+        return CompletableFuture.completedFuture(memberRepository.findVersionById(id));
+    }
+
+    @Async(AsyncRepositoryConfig.REPOSITORY_EXECUTOR)
+    @Transactional(readOnly = true)
+    public CompletableFuture<String> findAllEtag(Pageable pageable) {
+        return CompletableFuture.completedFuture(pagedMemberRepository.findMemberDtoEtag(pageable));
+    }
+
+    @Async(AsyncRepositoryConfig.REPOSITORY_EXECUTOR)
+    @Transactional(readOnly = true)
+    public CompletableFuture<String> findByAgeEtag(int age, Pageable pageable) {
+        return CompletableFuture.completedFuture(pagedMemberRepository.findMemberDtoByAgeEtag(age, pageable));
+    }
+}
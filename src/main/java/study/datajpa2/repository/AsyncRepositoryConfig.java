@@ -0,0 +1,50 @@
+package study.datajpa2.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.datajpa2.querycount.QueryCountScope;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * AsyncMemberRepository 가 사용하는 executor.
+ * 쓰레드 수는 커넥션 풀 크기에 맞춰서 DB 가 처리할 수 있는 만큼만 동시에 실행하고,
+ * 대기 큐까지 가득 차면 기다리지 않고 TaskRejectedException 으로 바로 거절한다.
+ */
+@EnableAsync
+@Configuration
+public class AsyncRepositoryConfig {
+
+    public static final String REPOSITORY_EXECUTOR = "repositoryExecutor";
+
+    //Executor 빈을 등록하면 스프링 부트의 기본 executor 가 만들어지지 않으므로 직접 등록한다. (MVC 비동기 처리, 기본 @Async)
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(REPOSITORY_EXECUTOR)
+    public ThreadPoolTaskExecutor repositoryExecutor(
+            @Value("${async-repository.pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+            @Value("${async-repository.queue-capacity:100}") int queueCapacity) {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("repository-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        //HTTP 요청의 @QueryBudget 에 worker 쓰레드에서 실행한 SQL 도 포함되게 한다.
+        executor.setTaskDecorator(QueryCountScope::propagate);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -0,0 +1,16 @@
+package study.datajpa2.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface BatchInsertRepository<T> {
+
+    /**
+     * 대량 insert 용. batch_size 단위로 flush, clear 하면서 persist 한다.
+     * 영속성 컨텍스트를 비우기 때문에 반환된 엔티티는 준영속 상태이고,
+     * 같은 트랜잭션에서 먼저 조회해둔 엔티티도 함께 준영속 상태가 된다.
+     */
+    @Transactional
+    <S extends T> List<S> saveAllBatched(Iterable<S> entities);
+}
@@ -0,0 +1,35 @@
+package study.datajpa2.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchInsertRepositoryImpl<T> implements BatchInsertRepository<T> {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int batchSize;
+
+    @Override
+    public <S extends T> List<S> saveAllBatched(Iterable<S> entities) {
+        final List<S> result = new ArrayList<>();
+        int count = 0;
+        for (S entity : entities) {
+            em.persist(entity);
+            result.add(entity);
+            //batch_size 와 같은 단위로 flush 해야 insert 가 한 batch 로 묶인다.
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return result;
+    }
+}
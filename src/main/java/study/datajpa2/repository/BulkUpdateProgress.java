@@ -0,0 +1,35 @@
+package study.datajpa2.repository;
+
+public class BulkUpdateProgress {
+
+    private final int completedChunks;
+    private final int totalChunks;
+    private final long updatedRows;
+
+    public BulkUpdateProgress(int completedChunks, int totalChunks, long updatedRows) {
+        this.completedChunks = completedChunks;
+        this.totalChunks = totalChunks;
+        this.updatedRows = updatedRows;
+    }
+
+    public int getCompletedChunks() {
+        return completedChunks;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public long getUpdatedRows() {
+        return updatedRows;
+    }
+
+    public boolean isDone() {
+        return completedChunks == totalChunks;
+    }
+
+    @Override
+    public String toString() {
+        return completedChunks + "/" + totalChunks + " chunks, " + updatedRows + " rows";
+    }
+}
@@ -0,0 +1,23 @@
+package study.datajpa2.repository;
+
+import org.hibernate.LockOptions;
+
+public enum ClaimMode {
+
+    //다른 트랜잭션이 잠근 row 는 건너뛴다. 여러 worker 가 서로 다른 row 를 가져감
+    SKIP_LOCKED(LockOptions.SKIP_LOCKED),
+    //잠긴 row 가 있으면 기다리지 않고 바로 예외
+    NOWAIT(LockOptions.NO_WAIT),
+    //findLockByUsername 처럼 잠금이 풀릴 때까지 기다린다.
+    WAIT(LockOptions.WAIT_FOREVER);
+
+    private final int lockTimeout;
+
+    ClaimMode(int lockTimeout) {
+        this.lockTimeout = lockTimeout;
+    }
+
+    public int getLockTimeout() {
+        return lockTimeout;
+    }
+}
@@ -0,0 +1,81 @@
+package study.datajpa2.repository;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * OpenProjectionCompiler 가 만든 프로젝션. 조회할 엔티티 속성 목록(select 절)과
+ * getter 별로 컴파일된 함수를 가지고 있어서 row(Object[]) 하나로 프로젝션 객체를 만든다.
+ * default 메소드는 인터페이스의 구현을 그대로 호출한다.
+ */
+public class CompiledProjection<T> {
+
+    private final Class<T> type;
+    private final List<String> properties;
+    private final Set<String> joinedProperties;
+    private final Map<Method, Function<Object[], Object>> getters;
+    private final Map<Method, MethodHandle> defaultMethods;
+
+    CompiledProjection(Class<T> type, List<String> properties, Set<String> joinedProperties,
+                       Map<Method, Function<Object[], Object>> getters, Map<Method, MethodHandle> defaultMethods) {
+        this.type = type;
+        this.properties = Collections.unmodifiableList(properties);
+        this.joinedProperties = Collections.unmodifiableSet(joinedProperties);
+        this.getters = getters;
+        this.defaultMethods = defaultMethods;
+    }
+
+    //select 절에 넣을 속성 이름. row 의 순서와 같다.
+    public List<String> getProperties() {
+        return properties;
+    }
+
+    //중첩 프로젝션이 읽는 연관 엔티티. 연관이 없는 row 도 나오도록 left join 으로 select 해야 한다.
+    public Set<String> getJoinedProperties() {
+        return joinedProperties;
+    }
+
+    public T create(Object[] row) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new RowHandler(row)));
+    }
+
+    private class RowHandler implements InvocationHandler {
+
+        private final Object[] row;
+
+        private RowHandler(Object[] row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final Function<Object[], Object> getter = getters.get(method);
+            if (getter != null) {
+                return getter.apply(row);
+            }
+            final MethodHandle defaultMethod = defaultMethods.get(method);
+            if (defaultMethod != null) {
+                return defaultMethod.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + Arrays.toString(row);
+                default:
+                    //OpenProjectionCompiler 가 모든 추상 메소드를 컴파일하므로 오지 않는다.
+                    throw new IllegalStateException("Not compiled: " + method);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package study.datajpa2.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * 큰 IN 절을 batchSize(2의 거듭제곱) 단위로 나눠서 실행하고 결과를 합친다.
+ * 마지막 batch 는 hibernate.query.in_clause_parameter_padding 으로 2의 거듭제곱 크기로 채워지므로
+ * 컬렉션 크기가 달라도 만들어지는 쿼리 모양은 log2(batchSize) + 1 가지뿐이다.
+ *
+ * parallel 이면 batch 마다 별도 읽기 전용 트랜잭션(커넥션)에서 동시에 실행하고, 반환된 엔티티는 준영속 상태다.
+ * 트랜잭션 안에서 호출하면 parallel 이어도 순서대로 실행한다. 호출한 쓰레드가 커넥션을 잡은 채 worker 를 기다리면
+ * 동시에 호출하는 수만큼 커넥션을 두개씩 쓰게 되고, 커밋되지 않은 변경이 안 보이거나 수정해도 저장되지 않기 때문이다.
+ * worker 는 호출한 곳과 관계없이 모두 합쳐 parallelism 개이고 커넥션 풀보다 작아야 한다.
+ * batch 하나가 실패하면 아직 시작하지 않은 batch 는 취소한다.
+ */
+@Component
+public class InListExecutor {
+
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final TransactionTemplate batchTransaction;
+
+    public InListExecutor(@Value("${in-list.batch-size:512}") int batchSize,
+                          @Value("${in-list.parallelism:4}") int parallelism,
+                          @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+                          PlatformTransactionManager transactionManager) {
+        //0 이하면 batch 를 나누는 반복이 끝나지 않는다.
+        if (batchSize < 1 || batchSize > 1 << 30) {
+            throw new IllegalArgumentException("in-list.batch-size must be between 1 and 2^30: " + batchSize);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("in-list.parallelism must be positive: " + parallelism);
+        }
+        //worker 가 커넥션을 모두 가져가면 다른 요청이 커넥션을 기다린다.
+        if (parallelism >= connectionPoolSize) {
+            throw new IllegalArgumentException("in-list.parallelism must be smaller than the connection pool size ("
+                    + connectionPoolSize + "): " + parallelism);
+        }
+        this.batchSize = Integer.bitCount(batchSize) == 1 ? batchSize : Integer.highestOneBit(batchSize) << 1;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final Thread thread = new Thread(runnable, "in-list-executor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchTransaction.setReadOnly(true);
+    }
+
+    public <P, R> List<R> execute(Collection<P> values, boolean parallel, Function<List<P>, List<R>> query) {
+        //중복을 제거해야 같은 값이 여러 batch 에 들어가서 같은 row 가 두번 나오지 않는다.
+        final List<P> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        if (distinct.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final List<List<P>> batches = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += batchSize) {
+            batches.add(distinct.subList(from, Math.min(from + batchSize, distinct.size())));
+        }
+
+        final List<R> result = new ArrayList<>();
+        if (!parallel || batches.size() == 1 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (List<P> batch : batches) {
+                result.addAll(query.apply(batch));
+            }
+            return result;
+        }
+
+        final List<CompletableFuture<List<R>>> futures = new ArrayList<>(batches.size());
+        for (List<P> batch : batches) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> batchTransaction.execute(status -> query.apply(batch)), executor));
+        }
+        try {
+            for (CompletableFuture<List<R>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException | CancellationException e) {
+            //취소된 future 의 작업은 worker 가 꺼내도 실행하지 않는다.
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
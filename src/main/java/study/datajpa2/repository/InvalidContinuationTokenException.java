@@ -0,0 +1,16 @@
+package study.datajpa2.repository;
+
+/**
+ * 디코딩할 수 없거나 정렬 조건이 다른 continuationToken. 클라이언트 입력 오류이므로 컨트롤러에서 400 으로 응답한다.
+ * IllegalArgumentException 은 리포지토리 예외 변환에서 InvalidDataAccessApiUsageException 으로 바뀌어 컨트롤러까지 그대로 오지 않으므로 상속하지 않는다.
+ */
+public class InvalidContinuationTokenException extends RuntimeException {
+
+    public InvalidContinuationTokenException(String message) {
+        super(message);
+    }
+
+    public InvalidContinuationTokenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
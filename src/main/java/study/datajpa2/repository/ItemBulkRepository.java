@@ -0,0 +1,20 @@
+package study.datajpa2.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa2.entity.Item;
+
+public interface ItemBulkRepository {
+
+    /**
+     * persist/merge 를 거치지 않고 JDBC batch insert 로 저장한다. id가 이미 있으면 예외가 발생한다.
+     * 엔티티 리스너(Auditing)를 타지 않으므로 createdDate 는 batch 시작 시각으로 한번에 넣는다.
+     */
+    @Transactional
+    int bulkInsert(Iterable<Item> items);
+
+    /**
+     * bulkInsert 와 같지만 이미 있는 id는 건너뛴다. 실제로 insert 된 row 수를 반환한다.
+     */
+    @Transactional
+    int bulkInsertIgnoreDuplicates(Iterable<Item> items);
+}
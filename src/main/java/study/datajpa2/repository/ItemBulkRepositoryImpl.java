@@ -0,0 +1,104 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa2.auditing.AuditingClock;
+import study.datajpa2.entity.Item;
+
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ItemBulkRepositoryImpl implements ItemBulkRepository {
+
+    private static final String INSERT_SQL =
+            "insert into item (id, created_date) values (?, ?)";
+
+    //merge 는 기존 row 를 덮어쓰므로 not exists 로 중복을 거른다. select 절의 파라미터는 타입 추론이 안돼서 cast 해줌.
+    //not exists 확인과 insert 사이에 다른 트랜잭션이 같은 id 를 넣으면 duplicate key 가 나므로 그 row 는 건너뛴다.
+    private static final String INSERT_IGNORE_SQL =
+            "insert into item (id, created_date) select cast(? as varchar(255)), cast(? as timestamp) " +
+                    "where not exists (select 1 from item where id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditingClock auditingClock;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int batchSize;
+
+    @Override
+    public int bulkInsert(Iterable<Item> items) {
+        return insert(INSERT_SQL, items, false);
+    }
+
+    @Override
+    public int bulkInsertIgnoreDuplicates(Iterable<Item> items) {
+        return insert(INSERT_IGNORE_SQL, items, true);
+    }
+
+    private int insert(String sql, Iterable<Item> items, boolean ignoreDuplicates) {
+        //엔티티로 저장할 때와 같은 시계로 등록일을 채운다.
+        final Timestamp now = Timestamp.valueOf(auditingClock.now());
+        int inserted = 0;
+        List<Item> chunk = new ArrayList<>(batchSize);
+        for (Item item : items) {
+            chunk.add(item);
+            if (chunk.size() == batchSize) {
+                inserted += executeBatch(sql, chunk, now, ignoreDuplicates);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            inserted += executeBatch(sql, chunk, now, ignoreDuplicates);
+        }
+        return inserted;
+    }
+
+    private int executeBatch(String sql, List<Item> chunk, Timestamp now, boolean ignoreDuplicates) {
+        final int[][] results;
+        try {
+            results = jdbcTemplate.batchUpdate(sql, chunk, chunk.size(), (ps, item) -> {
+                ps.setString(1, item.getId());
+                ps.setTimestamp(2, now);
+                if (ignoreDuplicates) {
+                    ps.setString(3, item.getId());
+                }
+            });
+        } catch (DuplicateKeyException e) {
+            if (!ignoreDuplicates || !(e.getCause() instanceof BatchUpdateException)) {
+                throw e;
+            }
+            return retryFailed(chunk, now, ((BatchUpdateException) e.getCause()).getUpdateCounts());
+        }
+        int inserted = 0;
+        for (int[] batch : results) {
+            for (int count : batch) {
+                inserted += Math.max(count, 0);
+            }
+        }
+        return inserted;
+    }
+
+    //batch 중 실패한 row(또는 드라이버가 실패 후 실행하지 않은 row)만 하나씩 다시 넣는다.
+    private int retryFailed(List<Item> chunk, Timestamp now, int[] counts) {
+        int inserted = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i < counts.length && counts[i] != Statement.EXECUTE_FAILED) {
+                inserted += Math.max(counts[i], 0);
+                continue;
+            }
+            final String id = chunk.get(i).getId();
+            try {
+                inserted += jdbcTemplate.update(INSERT_IGNORE_SQL, id, now, id);
+            } catch (DuplicateKeyException e) {
+                //다른 트랜잭션이 먼저 넣었다.
+            }
+        }
+        return inserted;
+    }
+}
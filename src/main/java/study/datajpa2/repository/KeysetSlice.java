@@ -0,0 +1,39 @@
+package study.datajpa2.repository;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 키셋(seek) 페이징 결과.
+ * offset 대신 마지막 행의 (정렬키, member_id)를 담은 continuationToken 으로 다음 페이지를 조회한다.
+ */
+public class KeysetSlice<T> {
+
+    private final List<T> content;
+    private final String nextToken;
+
+    public KeysetSlice(List<T> content, String nextToken) {
+        this.content = content;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean isHasNext() {
+        return nextToken != null;
+    }
+
+    public <U> KeysetSlice<U> map(Function<? super T, ? extends U> converter) {
+        final List<U> converted = content.stream()
+                .map(converter)
+                .collect(Collectors.toList());
+        return new KeysetSlice<>(converted, nextToken);
+    }
+}
@@ -0,0 +1,74 @@
+package study.datajpa2.repository;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * continuationToken 인코딩/디코딩. 클라이언트에게는 불투명한 문자열로만 노출한다.
+ * 형식: property|direction|lastId|lastValue (lastValue 에 '|'가 들어가도 되도록 맨 뒤에 둔다)
+ * lastValue 는 null 이면 "N", 아니면 "V" + 값이다. (문자열 "null" 과 구분)
+ */
+class KeysetToken {
+
+    private static final String SEPARATOR = "|";
+    private static final String NULL_VALUE = "N";
+    private static final String VALUE_PREFIX = "V";
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final Long lastId;
+    private final String lastValue;
+
+    KeysetToken(String property, Sort.Direction direction, Long lastId, String lastValue) {
+        this.property = property;
+        this.direction = direction;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    static KeysetToken decode(String token) {
+        try {
+            final String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            final String[] parts = raw.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new InvalidContinuationTokenException("Invalid continuation token: " + token);
+            }
+            final String lastValue;
+            if (NULL_VALUE.equals(parts[3])) {
+                lastValue = null;
+            } else if (parts[3].startsWith(VALUE_PREFIX)) {
+                lastValue = parts[3].substring(VALUE_PREFIX.length());
+            } else {
+                throw new InvalidContinuationTokenException("Invalid continuation token: " + token);
+            }
+            return new KeysetToken(parts[0], Sort.Direction.fromString(parts[1]), Long.valueOf(parts[2]), lastValue);
+        } catch (IllegalArgumentException e) {
+            //Base64, direction, lastId 형식 오류 (NumberFormatException 포함)
+            throw new InvalidContinuationTokenException("Invalid continuation token: " + token, e);
+        }
+    }
+
+    String encode() {
+        final String value = lastValue == null ? NULL_VALUE : VALUE_PREFIX + lastValue;
+        final String raw = property + SEPARATOR + direction.name() + SEPARATOR + lastId + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    String getProperty() {
+        return property;
+    }
+
+    Sort.Direction getDirection() {
+        return direction;
+    }
+
+    Long getLastId() {
+        return lastId;
+    }
+
+    String getLastValue() {
+        return lastValue;
+    }
+}
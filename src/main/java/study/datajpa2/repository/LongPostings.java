@@ -0,0 +1,53 @@
+package study.datajpa2.repository;
+
+import java.util.Arrays;
+
+/**
+ * 정렬된 long 배열. 회원 id 를 Long 객체 없이 8바이트씩 저장한다.
+ * id 는 시퀀스로 증가하므로 추가는 대부분 배열 끝에 붙는다.
+ */
+class LongPostings {
+
+    private long[] ids = new long[4];
+    private int size;
+
+    void add(long id) {
+        final int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return;
+        }
+        final int insertAt = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1));
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    void remove(long id) {
+        final int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    //배열 헤더 16 + 객체 헤더와 필드 24
+    long estimatedBytes() {
+        return 40 + 8L * ids.length;
+    }
+}
@@ -0,0 +1,215 @@
+package study.datajpa2.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * bulkAgePlus 를 member_id 범위 단위로 나눠서 실행한다.
+ * 청크마다 짧은 트랜잭션(REQUIRES_NEW)을 사용하므로 row lock 을 오래 잡지 않고, parallelism 만큼 동시에 실행할 수 있다.
+ *
+ * 청크는 update 한 문장으로 조건 확인과 수정을 같이 한다. H2 의 data change delta table(final table)로
+ * 수정된 row 를 돌려받아서 member 2차 캐시 region 전체가 아니라 그 회원만 캐시에서 제거한다.
+ * 제거는 커밋 전과 후에 한번씩 한다. (하이버네이트 벌크 JPQL 과 같은 방식. 커밋 전에 다른 트랜잭션이 수정 전 값을 캐시에 넣어도 지워진다)
+ * MemberBulkUpdatedEvent 도 청크 트랜잭션 안에서 수정된 row 의 팀, 나이와 함께 발행한다.
+ * 받는 쪽은 그 청크가 커밋될 때 반영하므로 중간에 실패해도 커밋된 청크까지만 반영된다.
+ *
+ * 청크가 따로 커밋되므로 호출하는 쪽 트랜잭션 안에서는 실행하지 않는다. (영속성 컨텍스트의 Member 가 수정 전 나이를 들고 있게 되고,
+ * flush 된 수정이 있으면 그 row lock 때문에 청크가 대기한다)
+ */
+@Slf4j
+@Component
+public class MemberBulkAgeUpdater {
+
+    private static final String QUERY_CACHE_REGION = "member-by-username";
+
+    //PostgreSQL 이면 update ... returning member_id
+    private static final String UPDATE_CHUNK_SQL =
+            "select member_id, team_id, age from final table (" +
+                    "update member set age = age + 1, version = version + 1, last_modified_date = current_timestamp " +
+                    "where age >= ? and member_id >= ? and member_id < ?)";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate chunkTransaction;
+    private final ApplicationEventPublisher publisher;
+    private final int maxParallelism;
+    private final ExecutorService executor;
+
+    public MemberBulkAgeUpdater(EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher publisher,
+                                @Value("${bulk-update.max-parallelism:4}") int maxParallelism) {
+        if (maxParallelism < 1) {
+            throw new IllegalArgumentException("bulk-update.max-parallelism must be positive: " + maxParallelism);
+        }
+        this.emf = emf;
+        this.publisher = publisher;
+        this.maxParallelism = maxParallelism;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxParallelism, runnable -> {
+            final Thread thread = new Thread(runnable, "bulk-age-update-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public long bulkAgePlus(int age, int chunkSize, int parallelism) {
+        return bulkAgePlus(age, chunkSize, parallelism,
+                progress -> log.debug("bulkAgePlus(age >= {}) {}", age, progress));
+    }
+
+    public long bulkAgePlus(int age, int chunkSize, int parallelism, Consumer<BulkUpdateProgress> progressListener) {
+        //0 이하면 청크를 나누는 반복이 끝나지 않는다.
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("MemberBulkAgeUpdater commits per chunk; call it outside a transaction");
+        }
+        final List<long[]> chunks = chunks(chunkSize);
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicLong updated = new AtomicLong();
+
+        final List<Runnable> tasks = new ArrayList<>(chunks.size());
+        for (long[] chunk : chunks) {
+            tasks.add(() -> {
+                final int count = updateChunk(age, chunk[0], chunk[1]);
+                progressListener.accept(new BulkUpdateProgress(
+                        completed.incrementAndGet(), chunks.size(), updated.addAndGet(count)));
+            });
+        }
+        run(tasks, parallelism);
+
+        log.info("bulkAgePlus(age >= {}) updated {} rows in {} chunks", age, updated.get(), chunks.size());
+        return updated.get();
+    }
+
+    //[from, to) member_id 범위 목록
+    private List<long[]> chunks(int chunkSize) {
+        final Object[] range = chunkTransaction.execute(status ->
+                (Object[]) em.createQuery("select min(m.id), max(m.id) from Member m").getSingleResult());
+        if (range == null || range[0] == null) {
+            return Collections.emptyList();
+        }
+        final long min = (Long) range[0];
+        final long max = (Long) range[1];
+
+        final List<long[]> chunks = new ArrayList<>();
+        for (long from = min; from <= max; from += chunkSize) {
+            chunks.add(new long[]{from, Math.min(from + chunkSize, max + 1)});
+        }
+        return chunks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int updateChunk(int age, long fromId, long toId) {
+        return chunkTransaction.execute(status -> {
+            final List<Object[]> rows = em.createNativeQuery(UPDATE_CHUNK_SQL)
+                    .setParameter(1, age)
+                    .setParameter(2, fromId)
+                    .setParameter(3, toId)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            final List<Number> ids = new ArrayList<>(rows.size());
+            final Map<Long, Map<Integer, Long>> updatedAges = new HashMap<>();
+            for (Object[] row : rows) {
+                ids.add((Number) row[0]);
+                if (row[1] != null) {
+                    //final table 은 수정 후 값이므로 수정 전 나이는 하나 작다.
+                    updatedAges.computeIfAbsent(((Number) row[1]).longValue(), key -> new HashMap<>())
+                            .merge(((Number) row[2]).intValue() - 1, 1L, Long::sum);
+                }
+            }
+            evict(ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(ids);
+                }
+            });
+            publisher.publishEvent(new MemberBulkUpdatedEvent(age, rows.size(), updatedAges));
+            return rows.size();
+        });
+    }
+
+    private void evict(List<Number> ids) {
+        for (Number id : ids) {
+            emf.getCache().evict(Member.class, id.longValue());
+        }
+        emf.getCache().unwrap(Cache.class).evictQueryRegion(QUERY_CACHE_REGION);
+    }
+
+    //worker 는 최대 max-parallelism 개. 청크는 큐에서 하나씩 가져가고, 하나가 실패하면 남은 청크는 실행하지 않는다.
+    private void run(List<Runnable> tasks, int parallelism) {
+        final int workers = Math.max(1, Math.min(parallelism, maxParallelism));
+        if (workers == 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<>(tasks);
+        final List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> {
+                Runnable task;
+                while (!Thread.currentThread().isInterrupted() && (task = queue.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        queue.clear();
+                        throw e;
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            queue.clear();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("bulkAgePlus interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("bulkAgePlus chunk failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package study.datajpa2.repository;
+
+//deleteAllInBatch 처럼 엔티티 리스너를 거치지 않고 회원을 삭제했을 때 발행
+public class MemberBulkDeletedEvent {
+}
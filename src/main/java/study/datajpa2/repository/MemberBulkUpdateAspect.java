@@ -0,0 +1,30 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MemberBulkUpdateAspect {
+
+    private final ApplicationEventPublisher publisher;
+
+    @AfterReturning(
+            pointcut = "(execution(int study.datajpa2.repository.MemberRepository.bulkAgePlus(int)) " +
+                    "|| execution(int study.datajpa2.repository.MemberJpaRepository.bulkAgePlus(int))) && args(age)",
+            returning = "updatedCount")
+    public void afterBulkAgePlus(int age, int updatedCount) {
+        publisher.publishEvent(new MemberBulkUpdatedEvent(age, updatedCount));
+    }
+
+    //엔티티 리스너를 거치지 않는 삭제. 팀 회원 수, count 캐시를 다시 맞춰야 한다.
+    @AfterReturning("this(study.datajpa2.repository.MemberRepository) && " +
+            "(execution(* deleteAllInBatch(..)) || execution(* deleteAllByIdInBatch(..)) || execution(* deleteInBatch(..)))")
+    public void afterBulkDelete() {
+        publisher.publishEvent(new MemberBulkDeletedEvent());
+    }
+}
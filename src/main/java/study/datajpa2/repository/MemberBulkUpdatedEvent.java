@@ -0,0 +1,39 @@
+package study.datajpa2.repository;
+
+import java.util.Map;
+
+/**
+ * 벌크 수정 쿼리는 영속성 컨텍스트와 엔티티 리스너를 거치지 않으므로
+ * member 테이블에 의존하는 캐시들은 이 이벤트를 받아서 직접 정리해야 한다.
+ *
+ * 수정한 트랜잭션 안에서 발행되므로 반영은 커밋 후에 해야 한다. (MemberBulkAgeUpdater 는 청크마다 발행)
+ */
+public class MemberBulkUpdatedEvent {
+
+    private final int age;
+    private final int updatedCount;
+    private final Map<Long, Map<Integer, Long>> updatedAges;
+
+    public MemberBulkUpdatedEvent(int age, int updatedCount) {
+        this(age, updatedCount, null);
+    }
+
+    public MemberBulkUpdatedEvent(int age, int updatedCount, Map<Long, Map<Integer, Long>> updatedAges) {
+        this.age = age;
+        this.updatedCount = updatedCount;
+        this.updatedAges = updatedAges;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    //팀별로 한 살 많아진 회원의 수정 전 나이별 회원 수. 모르면 null (age 이상인 회원 전체가 바뀐 것으로 본다)
+    public Map<Long, Map<Integer, Long>> getUpdatedAges() {
+        return updatedAges;
+    }
+}
@@ -0,0 +1,52 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import study.datajpa2.entity.Member;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Objects;
+
+//Member 엔티티 변경시 캐시된 count 를 비우고 팀 회원 수, 팀별 나이 집계, username 인덱스를 갱신한다. 스프링 빈으로 생성되므로 주입받을 수 있다.
+//엔티티 리스너가 Member 의 콜백보다 먼저 호출되므로 getPersistedTeamId(), getPersistedAge() 는 변경 전 값이다.
+@RequiredArgsConstructor
+public class MemberChangeListener {
+
+    private final PageCountCache pageCountCache;
+    private final TeamMemberCounter teamMemberCounter;
+    private final TeamAgeSummary teamAgeSummary;
+    private final UsernameIndex usernameIndex;
+
+    @PostPersist
+    public void onPersist(Member member) {
+        pageCountCache.invalidate();
+        teamMemberCounter.increment(member.getTeamId(), 1);
+        teamAgeSummary.add(member.getTeamId(), member.getAge());
+        usernameIndex.put(member.getId(), member.getUsername());
+    }
+
+    @PostUpdate
+    public void onUpdate(Member member) {
+        pageCountCache.invalidate();
+        final Long before = member.getPersistedTeamId();
+        final Long after = member.getTeamId();
+        if (!Objects.equals(before, after)) {
+            teamMemberCounter.increment(before, -1);
+            teamMemberCounter.increment(after, 1);
+        }
+        if (!Objects.equals(before, after) || member.getPersistedAge() != member.getAge()) {
+            teamAgeSummary.remove(before, member.getPersistedAge());
+            teamAgeSummary.add(after, member.getAge());
+        }
+        usernameIndex.put(member.getId(), member.getUsername());
+    }
+
+    @PostRemove
+    public void onRemove(Member member) {
+        pageCountCache.invalidate();
+        teamMemberCounter.increment(member.getPersistedTeamId(), -1);
+        teamAgeSummary.remove(member.getPersistedTeamId(), member.getPersistedAge());
+        usernameIndex.remove(member.getId());
+    }
+}
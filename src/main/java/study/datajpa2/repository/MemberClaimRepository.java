@@ -0,0 +1,18 @@
+package study.datajpa2.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa2.entity.Member;
+
+import java.util.List;
+
+public interface MemberClaimRepository {
+
+    /**
+     * spec 에 맞는 회원을 id 순으로 최대 limit 건 PESSIMISTIC_WRITE 로 잠가서 가져온다.
+     * 잠금은 트랜잭션이 끝날 때 풀리므로 처리까지 같은 트랜잭션에서 해야 한다.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    List<Member> claim(Specification<Member> spec, int limit, ClaimMode mode);
+}
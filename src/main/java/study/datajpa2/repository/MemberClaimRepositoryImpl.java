@@ -0,0 +1,41 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import study.datajpa2.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MemberClaimRepositoryImpl implements MemberClaimRepository {
+
+    private static final String LOCK_TIMEOUT = "javax.persistence.lock.timeout";
+
+    private final EntityManager em;
+
+    @Override
+    public List<Member> claim(Specification<Member> spec, int limit, ClaimMode mode) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<Member> query = cb.createQuery(Member.class);
+        final Root<Member> root = query.from(Member.class);
+        if (spec != null) {
+            final Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.orderBy(cb.asc(root.get("id")));
+
+        return em.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint(LOCK_TIMEOUT, mode.getLockTimeout())
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,16 @@
+package study.datajpa2.repository;
+
+import study.datajpa2.entity.Member;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MemberInListRepository {
+
+    /**
+     * findByNames 와 같지만 names 를 InListExecutor 의 batch 크기로 나눠서 조회한다.
+     * parallel 이면 트랜잭션 밖에서 호출했을 때만 batch 를 별도 커넥션에서 동시에 조회하고 준영속 엔티티를 반환한다.
+     * 준영속이어도 팀을 읽을 수 있게 team 을 함께 조회한다.
+     */
+    List<Member> findByNamesPartitioned(Collection<String> names, boolean parallel);
+}
@@ -0,0 +1,23 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import study.datajpa2.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MemberInListRepositoryImpl implements MemberInListRepository {
+
+    private final EntityManager em;
+    private final InListExecutor inListExecutor;
+
+    @Override
+    public List<Member> findByNamesPartitioned(Collection<String> names, boolean parallel) {
+        return inListExecutor.execute(names, parallel, batch ->
+                em.createQuery("select m from Member m left join fetch m.team where m.username in :names", Member.class)
+                        .setParameter("names", batch)
+                        .getResultList());
+    }
+}
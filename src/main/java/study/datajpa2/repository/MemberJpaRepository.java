@@ -66,6 +66,24 @@ public class MemberJpaRepository {
                 .getResultList();
     }
 
+    //offset 대신 이전 페이지 마지막 행의 (username, id) 다음부터 조회한다. 첫 페이지는 lastUsername, lastId 를 null 로 넘긴다.
+    public List<Member> findByPageAfter(int age, String lastUsername, Long lastId, int limit) {
+        if (lastUsername == null || lastId == null) {
+            return em.createQuery("select m from Member m where m.age = :age order by m.username desc, m.id desc", Member.class)
+                    .setParameter("age", age)
+                    .setMaxResults(limit)
+                    .getResultList();
+        }
+        return em.createQuery("select m from Member m where m.age = :age" +
+                        " and (m.username < :username or (m.username = :username and m.id < :id))" +
+                        " order by m.username desc, m.id desc", Member.class)
+                .setParameter("age", age)
+                .setParameter("username", lastUsername)
+                .setParameter("id", lastId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
     public long totalCount(int age) {
         return em.createQuery("select count(m) from Member m where m.age = :age", Long.class)
                 .setParameter("age", age)
@@ -73,7 +91,7 @@ public class MemberJpaRepository {
     }
 
     public int bulkAgePlus(int age) {
-        return em.createQuery("update Member m set m.age = m.age + 1 where m.age >= :age")
+        return em.createQuery("update versioned Member m set m.age = m.age + 1 where m.age >= :age")
                 .setParameter("age", age)
                 .executeUpdate();
     }
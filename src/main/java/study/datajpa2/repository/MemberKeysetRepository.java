@@ -0,0 +1,14 @@
+package study.datajpa2.repository;
+
+import org.springframework.data.domain.Sort;
+import study.datajpa2.entity.Member;
+
+public interface MemberKeysetRepository {
+
+    /**
+     * (정렬키, member_id) 기준 키셋 페이징.
+     * 정렬키는 id, username, age 중 하나만 지원하고, token 이 null 이면 첫 페이지를 조회한다.
+     * 정렬 조건이 다른 페이지에서 받은 token 이나 깨진 token 을 넘기면 InvalidContinuationTokenException.
+     */
+    KeysetSlice<Member> findKeysetPage(Sort sort, String continuationToken, int size);
+}
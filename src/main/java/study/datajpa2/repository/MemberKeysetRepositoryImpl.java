@@ -0,0 +1,123 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import study.datajpa2.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MemberKeysetRepositoryImpl implements MemberKeysetRepository {
+
+    private final EntityManager em;
+
+    @Override
+    public KeysetSlice<Member> findKeysetPage(Sort sort, String continuationToken, int size) {
+        final Sort.Order order = resolveOrder(sort);
+        final String property = order.getProperty();
+        final Sort.Direction direction = order.getDirection();
+
+        KeysetToken cursor = null;
+        if (continuationToken != null) {
+            cursor = KeysetToken.decode(continuationToken);
+            if (!cursor.getProperty().equals(property) || cursor.getDirection() != direction) {
+                throw new InvalidContinuationTokenException("Continuation token does not match sort " + sort);
+            }
+        }
+
+        final String op = direction.isAscending() ? ">" : "<";
+        final String dir = direction.isAscending() ? "asc" : "desc";
+
+        final StringBuilder jpql = new StringBuilder("select m from Member m");
+        if (cursor != null) {
+            if ("id".equals(property)) {
+                jpql.append(" where m.id ").append(op).append(" :lastId");
+            } else {
+                jpql.append(" where ").append(keysetCondition(property, direction, cursor.getLastValue() == null));
+            }
+        }
+        jpql.append(" order by ");
+        if (!"id".equals(property)) {
+            //null 은 가장 작은 값으로 본다. (asc 면 맨 앞, desc 면 맨 뒤)
+            jpql.append("m.").append(property).append(" ").append(dir)
+                    .append(direction.isAscending() ? " nulls first" : " nulls last").append(", ");
+        }
+        jpql.append("m.id ").append(dir);
+
+        //다음 페이지 존재 여부를 알기 위해 하나 더 가져온다. count 쿼리는 날리지 않는다.
+        final TypedQuery<Member> query = em.createQuery(jpql.toString(), Member.class)
+                .setMaxResults(size + 1);
+        if (cursor != null) {
+            query.setParameter("lastId", cursor.getLastId());
+            if (!"id".equals(property) && cursor.getLastValue() != null) {
+                query.setParameter("lastValue", parseValue(property, cursor.getLastValue()));
+            }
+        }
+
+        final List<Member> result = query.getResultList();
+        if (result.size() <= size) {
+            return new KeysetSlice<>(result, null);
+        }
+
+        final List<Member> content = result.subList(0, size);
+        final Member last = content.get(size - 1);
+        final String nextToken = new KeysetToken(property, direction, last.getId(), valueOf(property, last)).encode();
+        return new KeysetSlice<>(content, nextToken);
+    }
+
+    //마지막 row 다음부터. null 은 asc 면 맨 앞, desc 면 맨 뒤에 있다.
+    private String keysetCondition(String property, Sort.Direction direction, boolean lastValueNull) {
+        final String column = "m." + property;
+        if (direction.isAscending()) {
+            return lastValueNull
+                    ? "(" + column + " is not null or m.id > :lastId)"
+                    : "(" + column + " > :lastValue or (" + column + " = :lastValue and m.id > :lastId))";
+        }
+        return lastValueNull
+                ? "(" + column + " is null and m.id < :lastId)"
+                : "(" + column + " < :lastValue or (" + column + " = :lastValue and m.id < :lastId) or " + column + " is null)";
+    }
+
+    private Sort.Order resolveOrder(Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return Sort.Order.asc("id");
+        }
+        final List<Sort.Order> orders = sort.toList();
+        if (orders.size() > 1) {
+            throw new IllegalArgumentException("Keyset paging supports a single sort key: " + sort);
+        }
+        final Sort.Order order = orders.get(0);
+        switch (order.getProperty()) {
+            case "id":
+            case "username":
+            case "age":
+                return order;
+            default:
+                throw new IllegalArgumentException("Unsupported keyset sort key: " + order.getProperty());
+        }
+    }
+
+    private Object parseValue(String property, String value) {
+        if ("age".equals(property)) {
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new InvalidContinuationTokenException("Invalid continuation token value: " + value, e);
+            }
+        }
+        return value;
+    }
+
+    private String valueOf(String property, Member member) {
+        switch (property) {
+            case "username":
+                return member.getUsername();    //null 이면 token 에 null 로 들어간다.
+            case "age":
+                return String.valueOf(member.getAge());
+            default:
+                return String.valueOf(member.getId());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package study.datajpa2.repository;
+
+import java.util.List;
+
+public interface MemberOpenProjectionRepository {
+
+    /**
+     * findProjectionsByUsername 의 열린 프로젝션 버전. 프로젝션 식이 참조하는 컬럼만 조회한다.
+     */
+    <T> List<T> findOpenProjectionsByUsername(String username, Class<T> type);
+}
@@ -0,0 +1,38 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class MemberOpenProjectionRepositoryImpl implements MemberOpenProjectionRepository {
+
+    private final EntityManager em;
+    private final OpenProjectionCompiler openProjectionCompiler;
+
+    @Override
+    public <T> List<T> findOpenProjectionsByUsername(String username, Class<T> type) {
+        final CompiledProjection<T> projection = openProjectionCompiler.compile(type);
+        //연관 엔티티(중첩 프로젝션)는 연관이 없는 회원도 나오도록 left join 한 alias 를 select 한다.
+        final String select = projection.getProperties().stream()
+                .map(property -> projection.getJoinedProperties().contains(property) ? "j_" + property : "m." + property)
+                .collect(Collectors.joining(", "));
+        final String joins = projection.getJoinedProperties().stream()
+                .map(property -> " left join m." + property + " j_" + property)
+                .collect(Collectors.joining());
+
+        final List<Tuple> rows = em.createQuery("select " + select + " from Member m" + joins + " where m.username = :username", Tuple.class)
+                .setParameter("username", username)
+                .getResultList();
+
+        final List<T> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            result.add(projection.create(row.toArray()));
+        }
+        return result;
+    }
+}
@@ -14,7 +14,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, JpaSpecificationExecutor<Member> {
+public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, MemberKeysetRepository,
+        MemberInListRepository, MemberOpenProjectionRepository, MemberSearchRepository, MemberClaimRepository,
+        BatchInsertRepository<Member>, JpaSpecificationExecutor<Member> {
 
     List<Member> findByUsernameAndAgeGreaterThan(String username, int age);
 
@@ -30,11 +32,28 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query("select new study.datajpa2.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
+    //DTO 로 바로 조회하므로 teamName 을 채우려고 Team 프록시를 row 마다 초기화하지 않는다.
+    //count 는 left join 이라 결과 row 수가 같으므로 조인 없이 member 만 센다.
+    @Query(value = "select new study.datajpa2.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t",
+            countQuery = "select count(m) from Member m")
+    Page<MemberDto> findMemberDtoPage(Pageable pageable);
+
+    @Query("select new study.datajpa2.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t")
+    Slice<MemberDto> findMemberDtoSlice(Pageable pageable);
+
+    @Query("select new study.datajpa2.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t")
+    List<MemberDto> findMemberDtoContent(Pageable pageable);
+
+    //큰 컬렉션은 findByNamesPartitioned 사용
     @Query("select m from Member m where m.username in :names")
     List<Member> findByNames(@Param("names") Collection<String> names);
 
     List<Member> findListByUsername(String username);   //다건
 
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "member-by-username")
+    })
     Member findMemberByUsername(String username);   //단건
 
     Optional<Member> findOptionalByUsername(String username);   //단건
@@ -47,13 +66,40 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 
     Slice<Member> findByAge2(int age, Pageable pageable);
 
+    //count 없이 content 만 가져온다. count 는 PagedMemberRepository 에서 필요할 때만 날린다.
+    List<Member> findContentByAge(int age, Pageable pageable);
+
+    @Query("select new study.datajpa2.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t where m.age = :age")
+    List<MemberDto> findMemberDtoContentByAge(@Param("age") int age, Pageable pageable);
+
+    long countByAge(int age);
+
+    //ETag, Last-Modified 계산용. 엔티티를 로딩하지 않고 version 과 수정일시만 가져온다.
+    @Query("select m.id as id, m.version as version, t.version as teamVersion, m.lastModifiedDate as lastModifiedDate " +
+            "from Member m left join m.team t where m.id = :id")
+    Optional<MemberVersion> findVersionById(@Param("id") Long id);
+
+    //findMemberDtoContent 와 같은 row 를 같은 순서로 가져와야 한다.
+    @Query("select m.id as id, m.version as version, t.version as teamVersion, m.lastModifiedDate as lastModifiedDate " +
+            "from Member m left join m.team t")
+    List<MemberVersion> findVersionContent(Pageable pageable);
+
+    @Query("select m.id as id, m.version as version, t.version as teamVersion, m.lastModifiedDate as lastModifiedDate " +
+            "from Member m left join m.team t where m.age = :age")
+    List<MemberVersion> findVersionContentByAge(@Param("age") int age, Pageable pageable);
+
+    @Query("select m from Member m")
+    List<Member> findContent(Pageable pageable);
+
     //변경할땐 @Modifying 어노테이션을 꼭 넣어주어야한다.
     //clearAutomatically = true는 영속성컨텍스트를 초기화해주는 옵션이다.
     //이유는 벌크성 수정쿼리는 영속성 컨텍스트를 신경쓰지 않고 바로 DB로 업데이트를 쳐버리기때문.
     //그래서 영속성 컨텍스트는 변경되지 않은 값이 남아있게 된다.
     //em.clear()를 하던 clearAutomatically = true를 하던 둘중하나는 해줘야함.
+    //versioned 를 붙여야 벌크 수정도 version 을 올려서 낙관적 락이 동시 수정을 감지한다. (하이버네이트 HQL)
+    //엔티티 리스너를 거치지 않으므로 수정일시는 직접 바꾼다. (Last-Modified 응답 헤더)
     @Modifying(clearAutomatically = true)
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
+    @Query("update versioned Member m set m.age = m.age + 1, m.lastModifiedDate = current_timestamp where m.age >= :age")
     int bulkAgePlus(@Param("age") int age);
 
     @Query("select m from Member m left join fetch m.team")
@@ -76,10 +122,12 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @EntityGraph(attributePaths = {"team"}) // 간단할때 사용. 아니면 jpql 로 페치조인 사용.
     List<Member> findEntityGraphByUsername(@Param("username") String username);
 
+    //리포지토리 기본 트랜잭션이 readOnly 라서 replica 가 설정되어 있으면 replica 에서 조회한다.
     @QueryHints(value = @QueryHint(name = "org.hibernate.readOnly", value = "true"))
     Member findReadOnlyByUsername(String username);
 
     //@Lock은 이게 걸려있는 애가 실행되면 다른 곳에서는 손대지 못하게 하는 어노테이션. 옵션마다 기능이 다르다.
+    //여러 worker 가 나눠서 처리할 때는 claim(spec, limit, ClaimMode.SKIP_LOCKED) 사용
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     List<Member> findLockByUsername(String username);
 
@@ -89,9 +137,14 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     Member findByNativeQuery(String username);
 
     @Query(value = "select m.member_id as id, m.username, t.name as teamName " +
-            "from member m left join team t",
+            "from member m left join team t on m.team_id = t.team_id",
             countQuery = "select count(*) from member",
             nativeQuery = true)
     Page<MemberProject> findByNativeProjection(Pageable pageable);
+
+    @Query(value = "select m.member_id as id, m.username, t.name as teamName " +
+            "from member m left join team t on m.team_id = t.team_id",
+            nativeQuery = true)
+    List<MemberProject> findNativeProjectionContent(Pageable pageable);
 }
 
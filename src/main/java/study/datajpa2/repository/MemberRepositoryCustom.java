@@ -3,7 +3,15 @@ package study.datajpa2.repository;
 import study.datajpa2.entity.Member;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MemberRepositoryCustom {
     List<Member> findMemberCustom();
+
+    /**
+     * 전체 회원을 fetchSize 단위로 커서에서 읽어오는 Stream (team 페치조인).
+     * clearInterval 건마다 영속성 컨텍스트를 비워서 메모리가 row 수에 비례해 늘지 않는다.
+     * 트랜잭션 안에서 호출하고 사용 후 반드시 close 해야 한다.
+     */
+    Stream<Member> streamAll(int fetchSize, int clearInterval);
 }
@@ -1,10 +1,14 @@
 package study.datajpa2.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.QueryHints;
 import study.datajpa2.entity.Member;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
@@ -16,4 +20,21 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    @Override
+    public Stream<Member> streamAll(int fetchSize, int clearInterval) {
+        final Stream<Member> stream = em.createQuery("select m from Member m left join fetch m.team", Member.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)    //스냅샷을 만들지 않음
+                .setHint(QueryHints.HINT_CACHE_MODE, CacheMode.IGNORE)  //export 로 2차 캐시를 채우지 않음
+                .getResultStream();
+
+        //현재 row 는 이미 team 까지 로딩되어 있으므로 준영속이 되어도 읽는데 문제 없다.
+        final AtomicLong count = new AtomicLong();
+        return stream.peek(member -> {
+            if (count.incrementAndGet() % clearInterval == 0) {
+                em.clear();
+            }
+        });
+    }
 }
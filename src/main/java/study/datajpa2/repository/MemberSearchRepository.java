@@ -0,0 +1,15 @@
+package study.datajpa2.repository;
+
+import study.datajpa2.dto.MemberSearchCondition;
+import study.datajpa2.entity.Member;
+
+import java.util.List;
+
+public interface MemberSearchRepository {
+
+    /**
+     * findAll(MemberSpec.of(condition)) 과 같은 결과.
+     * 조건 조합(어떤 조건이 있고 없는지)별로 만들어둔 JPQL 을 재사용하고 파라미터만 바인딩한다.
+     */
+    List<Member> search(MemberSearchCondition condition);
+}
@@ -0,0 +1,61 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import study.datajpa2.dto.MemberSearchCondition;
+import study.datajpa2.entity.Member;
+import study.datajpa2.repository.MemberSpec.Condition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Specification 은 호출마다 Criteria 트리를 만들고 하이버네이트가 그걸 다시 JPQL 로 렌더링한다.
+ * 조건 조합 모양은 몇가지뿐이므로 MemberSpec.of 가 조합하는 MemberSpec.Condition 묶음별로 JPQL 을 한번만 만들어서 캐시한다.
+ * 같은 JPQL 문자열이 재사용되므로 하이버네이트 쿼리 플랜 캐시도 그대로 탄다.
+ */
+@RequiredArgsConstructor
+public class MemberSearchRepositoryImpl implements MemberSearchRepository {
+
+    private static final ConcurrentHashMap<Set<Condition>, String> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final EntityManager em;
+
+    @Override
+    public List<Member> search(MemberSearchCondition condition) {
+        final Set<Condition> shape = shape(condition);
+        final TypedQuery<Member> query = em.createQuery(TEMPLATES.computeIfAbsent(shape, MemberSearchRepositoryImpl::compile), Member.class);
+        for (Condition each : shape) {
+            query.setParameter(each.parameter, each.value(condition));
+        }
+        return query.getResultList();
+    }
+
+    //MemberSpec.of 가 적용하는 조건 묶음
+    static Set<Condition> shape(MemberSearchCondition condition) {
+        final Set<Condition> shape = EnumSet.noneOf(Condition.class);
+        for (Condition each : Condition.values()) {
+            if (each.isApplied(condition)) {
+                shape.add(each);
+            }
+        }
+        return shape;
+    }
+
+    private static String compile(Set<Condition> shape) {
+        final StringBuilder jpql = new StringBuilder("select m from Member m");
+        final List<String> where = new ArrayList<>();
+        for (Condition each : shape) {
+            jpql.append(each.join);
+            where.add(each.where);
+        }
+        if (!where.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", where));
+        }
+        return jpql.toString();
+    }
+}
@@ -2,10 +2,12 @@ package study.datajpa2.repository;
 
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
+import study.datajpa2.dto.MemberSearchCondition;
 import study.datajpa2.entity.Member;
 import study.datajpa2.entity.Team;
 
 import javax.persistence.criteria.*;
+import java.util.function.Function;
 
 public class MemberSpec {
 
@@ -25,4 +27,52 @@ public class MemberSpec {
         return (root, query, criteriaBuilder) ->
             criteriaBuilder.equal(root.get("username"), username);
     }
+
+    //검색 조건으로 Specification 조합. 같은 조건을 캐시된 JPQL 로 실행하는 건 MemberRepository.search
+    public static Specification<Member> of(MemberSearchCondition condition) {
+        Specification<Member> spec = Specification.where(null);
+        for (Condition each : Condition.values()) {
+            if (each.isApplied(condition)) {
+                spec = spec.and(each.spec(condition));
+            }
+        }
+        return spec;
+    }
+
+    /**
+     * 검색 조건 항목별 Specification 과 그와 같은 JPQL 조각.
+     * MemberSpec.of 와 MemberSearchRepositoryImpl 이 모두 이 목록으로 조건을 조합하므로 적용 기준과 조건이 따로 놀지 않는다.
+     */
+    enum Condition {
+        TEAM_NAME(MemberSearchCondition::getTeamName, MemberSpec::teamName, " join m.team t", "t.name = :teamName", "teamName"),
+        USERNAME(MemberSearchCondition::getUsername, MemberSpec::username, "", "m.username = :username", "username");
+
+        private final Function<MemberSearchCondition, String> value;
+        private final Function<String, Specification<Member>> spec;
+        final String join;
+        final String where;
+        final String parameter;
+
+        Condition(Function<MemberSearchCondition, String> value, Function<String, Specification<Member>> spec,
+                  String join, String where, String parameter) {
+            this.value = value;
+            this.spec = spec;
+            this.join = join;
+            this.where = where;
+            this.parameter = parameter;
+        }
+
+        //null 이거나 빈 문자열이면 적용하지 않는다. (teamName 의 StringUtils.isEmpty 와 같은 기준)
+        boolean isApplied(MemberSearchCondition condition) {
+            return !StringUtils.isEmpty(value(condition));
+        }
+
+        String value(MemberSearchCondition condition) {
+            return value.apply(condition);
+        }
+
+        Specification<Member> spec(MemberSearchCondition condition) {
+            return spec.apply(value(condition));
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package study.datajpa2.repository;
+
+import java.time.LocalDateTime;
+
+//조건부 GET(ETag, Last-Modified) 검사용. 엔티티 대신 version, 수정일시만 조회한다.
+public interface MemberVersion {
+
+    Long getId();
+
+    Long getVersion();
+
+    //team 이름이 바뀌어도 MemberDto 가 달라지므로 페이지 ETag 에 포함한다. team 이 없으면 null
+    Long getTeamVersion();
+
+    LocalDateTime getLastModifiedDate();
+}
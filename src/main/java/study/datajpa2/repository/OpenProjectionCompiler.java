@@ -0,0 +1,172 @@
+package study.datajpa2.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.ast.OpPlus;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 열린 프로젝션(@Value("#{target...}"))을 한번만 해석해서 람다로 바꿔둔다.
+ * 스프링 데이터는 엔티티 전체를 조회한 뒤 getter 를 호출할 때마다 SpEL 을 평가하지만,
+ * 여기서는 식에서 참조하는 target 속성만 select 하고 row 값으로 바로 계산한다.
+ *
+ * 지원하는 식: target.속성, 문자/숫자 리터럴, + 연산. 그 외의 식은 컴파일할 때 IllegalArgumentException.
+ * 파라미터가 있거나 반환 타입이 void 인 추상 메소드도 컴파일할 때 IllegalArgumentException.
+ * @Value 가 없는 getter 는 닫힌 프로젝션처럼 같은 이름의 속성을 그대로 반환한다.
+ * 반환 타입이 인터페이스인 getter(중첩 프로젝션)는 연관 엔티티를 left join 으로 가져와서 스프링 데이터 프로젝션으로 감싼다.
+ * default 메소드는 인터페이스의 구현을 호출한다.
+ */
+@Component
+public class OpenProjectionCompiler {
+
+    private static final String TARGET = "target";
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+    private final Map<Class<?>, CompiledProjection<?>> compiled = new ConcurrentHashMap<>();
+
+    public OpenProjectionCompiler() {
+        //애플리케이션 시작시 미리 컴파일해서 잘못된 식을 바로 알 수 있게 한다.
+        compile(UsernameOnly.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompiledProjection<T> compile(Class<T> type) {
+        return (CompiledProjection<T>) compiled.computeIfAbsent(type, this::doCompile);
+    }
+
+    private <T> CompiledProjection<T> doCompile(Class<T> type) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("Projection must be an interface: " + type);
+        }
+        final List<String> properties = new ArrayList<>();
+        final Set<String> joinedProperties = new LinkedHashSet<>();
+        final Map<Method, Function<Object[], Object>> getters = new HashMap<>();
+        final Map<Method, MethodHandle> defaultMethods = new HashMap<>();
+
+        for (Method method : type.getMethods()) {
+            if (method.isDefault()) {
+                defaultMethods.put(method, defaultMethod(type, method));
+                continue;
+            }
+            //row 값으로 만들 수 없는 메소드는 호출할 때가 아니라 컴파일할 때 거른다.
+            if (method.getParameterCount() > 0 || method.getReturnType() == void.class) {
+                throw new IllegalArgumentException(type.getSimpleName() + " unsupported projection method: " + method);
+            }
+            final Value value = method.getAnnotation(Value.class);
+            if (value != null) {
+                getters.put(method, compileExpression(type, value.value(), properties));
+            } else if (isNestedProjection(method.getReturnType())) {
+                final String property = propertyName(method);
+                joinedProperties.add(property);
+                getters.put(method, nested(method.getReturnType(), column(properties, property)));
+            } else {
+                getters.put(method, column(properties, propertyName(method)));
+            }
+        }
+        return new CompiledProjection<>(type, properties, joinedProperties, getters, defaultMethods);
+    }
+
+    private Function<Object[], Object> nested(Class<?> projectionType, Function<Object[], Object> entity) {
+        return row -> {
+            final Object value = entity.apply(row);
+            return value == null ? null : projectionFactory.createProjection(projectionType, value);
+        };
+    }
+
+    private static boolean isNestedProjection(Class<?> returnType) {
+        return returnType.isInterface() && !returnType.getName().startsWith("java.")
+                && !Collection.class.isAssignableFrom(returnType) && !Map.class.isAssignableFrom(returnType);
+    }
+
+    private static MethodHandle defaultMethod(Class<?> type, Method method) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup()).unreflectSpecial(method, type);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " default method is not accessible: " + method, e);
+        }
+    }
+
+    private Function<Object[], Object> compileExpression(Class<?> type, String template, List<String> properties) {
+        if (!template.startsWith("#{") || !template.endsWith("}")) {
+            throw new IllegalArgumentException(type.getSimpleName() + " @Value must be #{...}: " + template);
+        }
+        final SpelExpression expression = parser.parseRaw(template.substring(2, template.length() - 1));
+        return compileNode(type, expression.getAST(), properties);
+    }
+
+    private Function<Object[], Object> compileNode(Class<?> type, SpelNode node, List<String> properties) {
+        if (node instanceof Literal) {
+            final Object literal = ((Literal) node).getLiteralValue().getValue();
+            return row -> literal;
+        }
+        if (node instanceof OpPlus && node.getChildCount() == 2) {
+            final Function<Object[], Object> left = compileNode(type, node.getChild(0), properties);
+            final Function<Object[], Object> right = compileNode(type, node.getChild(1), properties);
+            return row -> plus(left.apply(row), right.apply(row));
+        }
+        if (node instanceof CompoundExpression && node.getChildCount() == 2
+                && node.getChild(0) instanceof PropertyOrFieldReference
+                && TARGET.equals(((PropertyOrFieldReference) node.getChild(0)).getName())
+                && node.getChild(1) instanceof PropertyOrFieldReference) {
+            return column(properties, ((PropertyOrFieldReference) node.getChild(1)).getName());
+        }
+        throw new IllegalArgumentException(type.getSimpleName() + " unsupported projection expression: " + node.toStringAST());
+    }
+
+    private Function<Object[], Object> column(List<String> properties, String property) {
+        int index = properties.indexOf(property);
+        if (index < 0) {
+            properties.add(property);
+            index = properties.size() - 1;
+        }
+        final int column = index;
+        return row -> row[column];
+    }
+
+    //SpEL 의 + 와 같게 둘 중 하나라도 문자열이면 이어붙이고, 아니면 숫자 덧셈
+    private static Object plus(Object left, Object right) {
+        if (left instanceof String || right instanceof String || left == null || right == null) {
+            return String.valueOf(left) + right;
+        }
+        if (left instanceof Integer && right instanceof Integer) {
+            return (Integer) left + (Integer) right;
+        }
+        if ((left instanceof Integer || left instanceof Long) && (right instanceof Integer || right instanceof Long)) {
+            return ((Number) left).longValue() + ((Number) right).longValue();
+        }
+        return ((Number) left).doubleValue() + ((Number) right).doubleValue();
+    }
+
+    private static String propertyName(Method method) {
+        final String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return StringUtils.uncapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2) {
+            return StringUtils.uncapitalize(name.substring(2));
+        }
+        return name;
+    }
+}
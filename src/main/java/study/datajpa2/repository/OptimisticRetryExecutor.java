@@ -0,0 +1,92 @@
+package study.datajpa2.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 작업을 새 트랜잭션에서 실행하고 낙관적 락 충돌(OptimisticLockException)이 나면 다시 실행한다.
+ * 재시도 사이에는 지수 백오프에 지터(0 ~ 백오프 사이 랜덤)를 줘서 충돌한 worker 들이 다시 동시에 부딪히지 않게 한다.
+ *
+ * 작업은 매번 엔티티를 다시 조회해야 한다. 바깥 트랜잭션에서 조회한 엔티티를 넘겨받아 수정하면 재시도해도 계속 충돌한다.
+ */
+@Slf4j
+@Component
+public class OptimisticRetryExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong conflictCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+                                   @Value("${optimistic-retry.max-attempts:5}") int maxAttempts,
+                                   @Value("${optimistic-retry.initial-backoff:10ms}") Duration initialBackoff,
+                                   @Value("${optimistic-retry.max-backoff:500ms}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                conflictCount.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    exhaustedCount.incrementAndGet();
+                    throw e;
+                }
+                retryCount.incrementAndGet();
+                log.debug("optimistic lock conflict, retry {}/{}", attempt, maxAttempts - 1);
+                backoff(attempt);
+            }
+        }
+    }
+
+    public void execute(Runnable work) {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private void backoff(int attempt) {
+        final long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to retry", e);
+        }
+    }
+
+    public long getConflictCount() {
+        return conflictCount.get();
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    //maxAttempts 까지 재시도해도 실패한 수
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+}
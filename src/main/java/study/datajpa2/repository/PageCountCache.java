@@ -0,0 +1,115 @@
+package study.datajpa2.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Page 반환 쿼리의 count 전략.
+ * 1. 마지막 페이지처럼 content 가 pageSize 보다 적으면 count 쿼리 없이 total 을 계산한다. (PageableExecutionUtils)
+ * 2. count 가 필요하면 key 별로 TTL 동안 캐시된 값을 사용한다.
+ * 3. member 테이블이 변경되면(save, delete, bulkAgePlus, deleteAllInBatch) 캐시를 모두 비운다.
+ *    flush 때 비워도 커밋 전에 다른 트랜잭션이 이전 count 를 다시 캐시할 수 있으므로 커밋된 뒤에 한번 더 비운다.
+ */
+@Component
+public class PageCountCache {
+
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, CachedCount> counts = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Runnable clearTask = this::clear;
+
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong cachedHitCount = new AtomicLong();
+
+    public PageCountCache(@Value("${count-cache.ttl:30s}") Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public <T> Page<T> getPage(String key, List<T> content, Pageable pageable, LongSupplier countQuery) {
+        final boolean[] counted = {false};
+        final Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            counted[0] = true;
+            return count(key, countQuery);
+        });
+        if (!counted[0]) {
+            skippedCount.incrementAndGet();
+        }
+        return page;
+    }
+
+    public long count(String key, LongSupplier countQuery) {
+        final long now = System.nanoTime();
+        final CachedCount cached = counts.get(key);
+        if (cached != null && now - cached.loadedAt < ttlNanos) {
+            cachedHitCount.incrementAndGet();
+            return cached.total;
+        }
+
+        //count 도중 invalidate 되었으면 오래된 값을 캐시에 넣지 않는다.
+        final long gen = generation.get();
+        final long total = countQuery.getAsLong();
+        executedCount.incrementAndGet();
+        if (generation.get() == gen) {
+            counts.put(key, new CachedCount(total, now));
+        }
+        return total;
+    }
+
+    public void invalidate() {
+        clear();
+        AfterCommit.run(this, clearTask);
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        counts.clear();
+    }
+
+    @EventListener
+    public void onBulkUpdate(MemberBulkUpdatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onBulkDelete(MemberBulkDeletedEvent event) {
+        invalidate();
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    //짧은 페이지라서 생략했거나 캐시에서 응답해서 날리지 않은 count 쿼리 수
+    public long getSavedCount() {
+        return skippedCount.get() + cachedHitCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getCachedHitCount() {
+        return cachedHitCount.get();
+    }
+
+    private static class CachedCount {
+        private final long total;
+        private final long loadedAt;
+
+        private CachedCount(long total, long loadedAt) {
+            this.total = total;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
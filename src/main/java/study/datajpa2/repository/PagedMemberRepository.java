@@ -0,0 +1,117 @@
+package study.datajpa2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import study.datajpa2.dto.MemberDto;
+import study.datajpa2.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * MemberRepository 의 Page 반환 메소드를 count 전략(PageCountCache)을 거쳐서 실행한다.
+ * content 는 List 반환 쿼리로 가져오고 count 는 필요할 때만 날린다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PagedMemberRepository {
+
+    //조건 없는 count 는 메소드와 상관없이 값이 같으므로 같은 key 를 사용한다.
+    private static final String COUNT_ALL_KEY = "all";
+    private static final String ID = "id";
+
+    private final MemberRepository memberRepository;
+    private final PageCountCache pageCountCache;
+    private final EntityManager em;
+
+    //true 면 조건 없는 count 는 count(*) 대신 H2 의 row 추정치를 사용한다.
+    @Value("${count-cache.approximate:false}")
+    private boolean approximate;
+
+    public Page<Member> findAll(Pageable pageable) {
+        final List<Member> content = memberRepository.findContent(withIdOrder(pageable));
+        return pageCountCache.getPage(COUNT_ALL_KEY, content, pageable, this::countAll);
+    }
+
+    public Page<MemberDto> findMemberDto(Pageable pageable) {
+        final List<MemberDto> content = memberRepository.findMemberDtoContent(withIdOrder(pageable));
+        return pageCountCache.getPage(COUNT_ALL_KEY, content, pageable, this::countAll);
+    }
+
+    public Page<Member> findByAge(int age, Pageable pageable) {
+        final List<Member> content = memberRepository.findContentByAge(age, withIdOrder(pageable));
+        return pageCountCache.getPage("findByAge:" + age, content, pageable, () -> memberRepository.countByAge(age));
+    }
+
+    //findByAge 와 count 가 같으므로 같은 key 를 사용한다.
+    public Page<MemberDto> findMemberDtoByAge(int age, Pageable pageable) {
+        final List<MemberDto> content = memberRepository.findMemberDtoContentByAge(age, withIdOrder(pageable));
+        return pageCountCache.getPage("findByAge:" + age, content, pageable, () -> memberRepository.countByAge(age));
+    }
+
+    //findMemberDto 응답의 ETag. content 대신 version 만 조회하고 total 은 findMemberDto 와 같은 방법으로 구한다.
+    public String findMemberDtoEtag(Pageable pageable) {
+        final List<MemberVersion> versions = memberRepository.findVersionContent(withIdOrder(pageable));
+        return etag(pageCountCache.getPage(COUNT_ALL_KEY, versions, pageable, this::countAll));
+    }
+
+    public String findMemberDtoByAgeEtag(int age, Pageable pageable) {
+        final List<MemberVersion> versions = memberRepository.findVersionContentByAge(age, withIdOrder(pageable));
+        return etag(pageCountCache.getPage("findByAge:" + age, versions, pageable, () -> memberRepository.countByAge(age)));
+    }
+
+    public Page<MemberProject> findByNativeProjection(Pageable pageable) {
+        final List<MemberProject> content = memberRepository.findNativeProjectionContent(pageable);
+        return pageCountCache.getPage(COUNT_ALL_KEY, content, pageable, this::countAll);
+    }
+
+    //정렬이 없거나 정렬 값이 같은 row 가 있으면 DB 가 매번 다른 순서로 줄 수 있다.
+    //content 와 ETag 계산용 version 목록이 같은 순서가 되도록 마지막에 id 로 정렬한다.
+    private static Pageable withIdOrder(Pageable pageable) {
+        if (pageable.isUnpaged() || pageable.getSort().getOrderFor(ID) != null) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().and(Sort.by(ID)));
+    }
+
+    //row 하나의 version 만 바뀌어도 값이 달라진다. 31 * h 해시는 충돌을 쉽게 만들 수 있으므로 SHA-256 을 사용한다.
+    private static String etag(Page<MemberVersion> page) {
+        final StringBuilder source = new StringBuilder().append(page.getTotalElements());
+        for (MemberVersion version : page) {
+            source.append('|').append(version.getId())
+                    .append(':').append(version.getVersion())
+                    .append(':').append(version.getTeamVersion());
+        }
+        final MessageDigest digest = sha256();
+        final byte[] hash = digest.digest(source.toString().getBytes(StandardCharsets.UTF_8));
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //모든 JVM 이 지원해야 하는 알고리즘
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long countAll() {
+        if (approximate) {
+            final Number estimate = (Number) em.createNativeQuery(
+                            "select row_count_estimate from information_schema.tables where table_name = 'MEMBER'")
+                    .getSingleResult();
+            return estimate.longValue();
+        }
+        return memberRepository.count();
+    }
+}
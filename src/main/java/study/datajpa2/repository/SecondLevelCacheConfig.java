@@ -0,0 +1,33 @@
+package study.datajpa2.repository;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * 2차 캐시 region 을 담는 JCache CacheManager 를 애플리케이션 컨텍스트마다 따로 만든다.
+ * 설정하지 않으면 하이버네이트는 JVM 에 하나인 기본 CacheManager 를 쓰므로, 한 JVM 에 SessionFactory 가 여럿이면
+ * (DB 가 다른 테스트 컨텍스트 등) 같은 region 과 key 를 공유해서 다른 DB 의 엔티티나 soft lock 이 보인다.
+ * region 설정(application.conf)은 URI 와 상관없이 클래스패스에서 읽는다.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        return Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("urn:second-level-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
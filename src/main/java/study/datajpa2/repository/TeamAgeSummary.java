@@ -0,0 +1,318 @@
+package study.datajpa2.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import study.datajpa2.dto.TeamAgeStatsDto;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 팀별 회원 수, 평균 나이, 나이 구간별 회원 수를 메모리에 유지한다. 조회할 때 member 테이블을 group by 하지 않는다.
+ *
+ * 팀마다 나이별 회원 수를 가지고 있어서 bulkAgePlus(age) 는 age 이상인 칸을 한 칸씩 옮기는 것으로 반영된다.
+ * MemberBulkAgeUpdater 는 청크마다 수정된 회원의 팀, 나이를 같이 보내므로 그 회원만 옮긴다.
+ * 엔티티 변경(MemberChangeListener)과 벌크 수정은 트랜잭션에 순서대로 모았다가 커밋되면 반영한다.
+ * 리스너를 거치지 않는 벌크 삭제가 있으면 다른 쓰레드에서 다시 만든다(rebuild).
+ * rebuild 중에 커밋된 변경은 기존 값에 반영하면서 모아두었다가 새로 만든 값에도 반영한 뒤 교체한다.
+ *
+ * 동시에 커밋된 트랜잭션의 반영 순서가 DB 와 다르거나 rebuild 의 group by 에 이미 포함된 변경이 다시 반영되면
+ * 어긋날 수 있으므로 check-interval 마다 실제 group by 와 비교하고 다르면 다시 만든다.
+ */
+@Slf4j
+@Component
+public class TeamAgeSummary {
+
+    private static final String GROUP_BY_SQL =
+            "select team_id, age, count(*) from member where team_id is not null group by team_id, age";
+
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final int bucketSize;
+    private final Duration checkInterval;
+
+    private volatile ConcurrentHashMap<Long, TeamAges> teams = new ConcurrentHashMap<>();
+    //변경은 read lock, rebuild 의 모으기 시작과 교체는 write lock
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    //rebuild 중에만 null 이 아니다.
+    private Queue<Consumer<Map<Long, TeamAges>>> replay;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong mismatchCount = new AtomicLong();
+
+    //DataSource 보다 먼저 만들어지는 엔티티 리스너에서 사용하므로 JdbcTemplate 은 나중에 꺼낸다.
+    public TeamAgeSummary(ObjectProvider<JdbcTemplate> jdbcTemplate,
+                          @Value("${age-summary.bucket-size:10}") int bucketSize,
+                          @Value("${age-summary.check-interval:10m}") Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bucketSize = bucketSize;
+        this.checkInterval = checkInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "team-age-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkQuietly,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+    }
+
+    public void add(Long teamId, int age) {
+        if (teamId != null) {
+            afterCommit(summary -> teamAges(summary, teamId).add(age, 1));
+        }
+    }
+
+    public void remove(Long teamId, int age) {
+        if (teamId != null) {
+            afterCommit(summary -> teamAges(summary, teamId).add(age, -1));
+        }
+    }
+
+    @EventListener
+    public void onBulkAgePlus(MemberBulkUpdatedEvent event) {
+        final Map<Long, Map<Integer, Long>> updatedAges = event.getUpdatedAges();
+        if (updatedAges == null) {
+            afterCommit(summary -> summary.values().forEach(ages -> ages.shift(event.getAge())));
+        } else {
+            afterCommit(summary -> updatedAges.forEach((teamId, counts) -> teamAges(summary, teamId).increment(counts)));
+        }
+    }
+
+    @EventListener
+    public void onBulkDelete(MemberBulkDeletedEvent event) {
+        AfterCommit.run(this, () -> scheduler.execute(this::rebuildQuietly));
+    }
+
+    private void afterCommit(Consumer<Map<Long, TeamAges>> change) {
+        AfterCommit.run(this, () -> apply(change));
+    }
+
+    private void apply(Consumer<Map<Long, TeamAges>> change) {
+        swapLock.readLock().lock();
+        try {
+            change.accept(teams);
+            if (replay != null) {
+                replay.add(change);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private TeamAges teamAges(Map<Long, TeamAges> summary, Long teamId) {
+        return summary.computeIfAbsent(teamId, key -> new TeamAges());
+    }
+
+    public TeamAgeStatsDto getTeamStats(Long teamId) {
+        final TeamAges ages = teams.get(teamId);
+        return ages == null ? new TeamAgeStatsDto(teamId, 0, 0, new TreeMap<>()) : ages.toDto(teamId);
+    }
+
+    public List<TeamAgeStatsDto> getAllTeamStats() {
+        final List<TeamAgeStatsDto> result = new ArrayList<>();
+        new TreeMap<>(teams).forEach((teamId, ages) -> {
+            final TeamAgeStatsDto stats = ages.toDto(teamId);
+            if (stats.getMemberCount() > 0) {
+                result.add(stats);
+            }
+        });
+        return result;
+    }
+
+    //member 테이블을 group by 해서 새로 만든다. group by 하는 동안 커밋된 변경은 새로 만든 값에 다시 반영한다.
+    public synchronized void rebuild() {
+        final Queue<Consumer<Map<Long, TeamAges>>> buffer = new ConcurrentLinkedQueue<>();
+        swapLock.writeLock().lock();
+        try {
+            replay = buffer;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        ConcurrentHashMap<Long, TeamAges> rebuilt = null;
+        try {
+            final Map<Long, Map<Integer, Long>> live = groupBy();
+            rebuilt = new ConcurrentHashMap<>();
+            for (Map.Entry<Long, Map<Integer, Long>> entry : live.entrySet()) {
+                final TeamAges ages = new TeamAges();
+                entry.getValue().forEach(ages::add);
+                rebuilt.put(entry.getKey(), ages);
+            }
+        } finally {
+            swapLock.writeLock().lock();
+            try {
+                if (rebuilt != null) {
+                    for (Consumer<Map<Long, TeamAges>> change : buffer) {
+                        change.accept(rebuilt);
+                    }
+                    teams = rebuilt;
+                }
+                replay = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        }
+        rebuildCount.incrementAndGet();
+    }
+
+    //실제 group by 와 다른 (팀, 나이) 칸 수
+    public int check() {
+        final Map<Long, Map<Integer, Long>> live = groupBy();
+        final Map<Long, Map<Integer, Long>> summary = new HashMap<>();
+        teams.forEach((teamId, ages) -> {
+            final Map<Integer, Long> counts = ages.snapshot();
+            if (!counts.isEmpty()) {
+                summary.put(teamId, counts);
+            }
+        });
+
+        int mismatches = 0;
+        for (Map.Entry<Long, Map<Integer, Long>> entry : live.entrySet()) {
+            mismatches += mismatches(entry.getValue(), summary.getOrDefault(entry.getKey(), Map.of()));
+        }
+        for (Map.Entry<Long, Map<Integer, Long>> entry : summary.entrySet()) {
+            if (!live.containsKey(entry.getKey())) {
+                mismatches += entry.getValue().size();
+            }
+        }
+        if (mismatches > 0) {
+            log.warn("team age summary differs from member table in {} cells", mismatches);
+            mismatchCount.addAndGet(mismatches);
+        }
+        return mismatches;
+    }
+
+    private static int mismatches(Map<Integer, Long> live, Map<Integer, Long> summary) {
+        int mismatches = 0;
+        for (Map.Entry<Integer, Long> entry : live.entrySet()) {
+            if (!Objects.equals(entry.getValue(), summary.get(entry.getKey()))) {
+                mismatches++;
+            }
+        }
+        for (Integer age : summary.keySet()) {
+            if (!live.containsKey(age)) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private Map<Long, Map<Integer, Long>> groupBy() {
+        final Map<Long, Map<Integer, Long>> result = new HashMap<>();
+        jdbcTemplate.getObject().query(GROUP_BY_SQL, (RowCallbackHandler) rs ->
+                result.computeIfAbsent(rs.getLong(1), key -> new HashMap<>()).put(rs.getInt(2), rs.getLong(3)));
+        return result;
+    }
+
+    private void checkQuietly() {
+        try {
+            if (check() > 0) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            log.warn("team age summary check failed", e);
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("team age summary rebuild failed", e);
+        }
+    }
+
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    public long getMismatchCount() {
+        return mismatchCount.get();
+    }
+
+    //팀 하나의 나이별 회원 수. 회원 수, 나이 합, 구간별 회원 수는 같이 바뀐다.
+    private class TeamAges {
+        private final NavigableMap<Integer, Long> counts = new TreeMap<>();
+        private final NavigableMap<Integer, Long> buckets = new TreeMap<>();
+        private long memberCount;
+        private long ageSum;
+
+        synchronized void add(int age, long delta) {
+            addCount(counts, age, delta);
+            addCount(buckets, bucketOf(age), delta);
+            memberCount += delta;
+            ageSum += age * delta;
+        }
+
+        //age 이상인 회원이 모두 한 살 많아진다. 큰 나이부터 옮겨야 겹치지 않는다.
+        //TreeMap 의 entry 는 삭제할 때 다른 key 로 재사용되므로 entry 가 아니라 map 을 복사해서 순회한다.
+        synchronized void shift(int age) {
+            for (Map.Entry<Integer, Long> entry : new TreeMap<>(counts.tailMap(age, true)).descendingMap().entrySet()) {
+                add(entry.getKey(), -entry.getValue());
+                add(entry.getKey() + 1, entry.getValue());
+            }
+        }
+
+        //나이별 회원 수만큼 한 살씩 옮긴다. (counts 의 key 는 옮기기 전 나이)
+        synchronized void increment(Map<Integer, Long> counts) {
+            counts.forEach((age, count) -> {
+                add(age, -count);
+                add(age + 1, count);
+            });
+        }
+
+        synchronized Map<Integer, Long> snapshot() {
+            return new HashMap<>(counts);
+        }
+
+        synchronized TeamAgeStatsDto toDto(Long teamId) {
+            final double averageAge = memberCount == 0 ? 0 : (double) ageSum / memberCount;
+            return new TeamAgeStatsDto(teamId, memberCount, averageAge, new TreeMap<>(buckets));
+        }
+
+        private int bucketOf(int age) {
+            return Math.floorDiv(age, bucketSize) * bucketSize;
+        }
+
+        private void addCount(Map<Integer, Long> map, int key, long delta) {
+            map.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package study.datajpa2.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * 팀별 회원 수(team.member_count)를 증감으로 유지한다.
+ *
+ * 회원 저장/삭제/팀 변경(MemberChangeListener)시 증감을 커밋되면 메모리(pending)에 더한다.
+ * pending 은 flush-interval 마다 쓰레드 하나가 꺼내서 한 트랜잭션으로 team 테이블에 반영하고, 실패하면 다시 더한다.
+ * 회원을 저장하는 트랜잭션은 team row 를 수정하지 않으므로(Team.members 는 낙관적 락에서도 제외) 같은 팀에 동시에 저장해도 team row 락을 기다리지 않는다.
+ * 조회는 team.member_count + pending 이다. 반영 중에는 값이 pending 에도 DB 에도 없거나(커밋 전) 양쪽에 있을 수 있어서(커밋 후)
+ * 반영 중에 읽은 값은 버리고 반영이 끝난 뒤 다시 읽는다. (flushLock)
+ *
+ * 반영 전에 서버가 죽거나 리스너를 거치지 않는 벌크 삭제가 있으면 값이 어긋나므로
+ * reconcile-interval 마다(벌크 삭제 후에는 다음 flush 때) 실제 count 로 맞춘다.
+ * 회원 트랜잭션은 첫 증감부터 pending 에 더할 때까지 commitLock 의 read lock 을 잡고, reconcile 은 write lock 을 잡고 맞춘다.
+ * 그래서 커밋되어 count 에는 들어갔지만 아직 pending 에 더하지 않은 증감을 reconcile 이 한번 더 세지 않는다.
+ */
+@Slf4j
+@Component
+public class TeamMemberCounter {
+
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final ObjectProvider<TransactionTemplate> transactionTemplate;
+    private final Duration flushInterval;
+    private final Duration reconcileInterval;
+
+    //팀별 아직 반영하지 않은 증감. 꺼낼 때 remove 와 더할 때 merge 가 키 단위로 원자적이라 증감을 잃지 않는다.
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+    private final StampedLock flushLock = new StampedLock();
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private volatile boolean reconcileRequested;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong repairedCount = new AtomicLong();
+
+    //reconcile 이 커밋 중인 회원 트랜잭션을 기다리는 최대 시간. 넘으면 다음 flush 때 다시 시도한다.
+    private static final long COMMIT_WAIT_MILLIS = 1000;
+
+    //DataSource 보다 먼저 만들어지는 엔티티 리스너에서 사용하므로 JdbcTemplate, TransactionTemplate 은 나중에 꺼낸다.
+    public TeamMemberCounter(ObjectProvider<JdbcTemplate> jdbcTemplate,
+                             ObjectProvider<TransactionTemplate> transactionTemplate,
+                             @Value("${team-count.flush-interval:1s}") Duration flushInterval,
+                             @Value("${team-count.reconcile-interval:10m}") Duration reconcileInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.flushInterval = flushInterval;
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "team-member-counter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> reconcileRequested = true,
+                reconcileInterval.toMillis(), reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        flushQuietly();
+    }
+
+    //트랜잭션 안이면 커밋될 때 반영하고 롤백되면 버린다.
+    public void increment(Long teamId, long delta) {
+        if (teamId == null || delta == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addPending(teamId, delta);
+            return;
+        }
+        //REQUIRES_NEW 로 중단된 트랜잭션의 synchronization 은 보이지 않으므로 트랜잭션마다 따로 모인다.
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof CommittingDeltas && ((CommittingDeltas) synchronization).counter() == this) {
+                ((CommittingDeltas) synchronization).deltas.merge(teamId, delta, Long::sum);
+                return;
+            }
+        }
+        final CommittingDeltas deltas = new CommittingDeltas();
+        deltas.deltas.put(teamId, delta);
+        TransactionSynchronizationManager.registerSynchronization(deltas);
+        commitLock.readLock().lock();
+    }
+
+    private void addPending(Long teamId, long delta) {
+        pending.merge(teamId, delta, TeamMemberCounter::sumOrRemove);
+    }
+
+    //합이 0 이면 키를 지운다.
+    private static Long sumOrRemove(Long a, Long b) {
+        final long sum = a + b;
+        return sum == 0 ? null : sum;
+    }
+
+    public long getMemberCount(Long teamId) {
+        return readConsistently(() -> {
+            final Long stored = jdbcTemplate.getObject()
+                    .queryForObject("select member_count from team where team_id = ?", Long.class, teamId);
+            return (stored == null ? 0 : stored) + pending.getOrDefault(teamId, 0L);
+        });
+    }
+
+    public Map<Long, Long> getMemberCounts() {
+        return readConsistently(() -> {
+            final Map<Long, Long> counts = new HashMap<>();
+            jdbcTemplate.getObject().query("select team_id, member_count from team",
+                    (RowCallbackHandler) rs -> counts.put(rs.getLong(1), rs.getLong(2) + pending.getOrDefault(rs.getLong(1), 0L)));
+            return counts;
+        });
+    }
+
+    //읽는 동안 반영이 없었으면 그대로 쓰고, 있었으면 반영이 끝나기를 기다렸다가 다시 읽는다.
+    private <T> T readConsistently(Supplier<T> read) {
+        final long optimistic = flushLock.tryOptimisticRead();
+        if (optimistic != 0) {
+            final T value = read.get();
+            if (flushLock.validate(optimistic)) {
+                return value;
+            }
+        }
+        final long stamp = flushLock.readLock();
+        try {
+            return read.get();
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    //pending 을 team 테이블에 반영한다. 반영된 팀 수
+    public synchronized int flush() {
+        final int flushed = applyPending();
+        if (reconcileRequested) {
+            reconcileRequested = false;
+            reconcile();
+        }
+        return flushed;
+    }
+
+    private int applyPending() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        final long stamp = flushLock.writeLock();
+        try {
+            //꺼낸 뒤에 더해진 증감은 pending 에 남아서 다음 flush 때 반영된다.
+            final Map<Long, Long> taken = new HashMap<>();
+            for (Long teamId : pending.keySet()) {
+                final Long delta = pending.remove(teamId);
+                if (delta != null) {
+                    taken.put(teamId, delta);
+                }
+            }
+            final List<Object[]> updates = new ArrayList<>(taken.size());
+            taken.forEach((teamId, delta) -> updates.add(new Object[]{delta, teamId}));
+            try {
+                transactionTemplate.getObject().executeWithoutResult(status -> jdbcTemplate.getObject()
+                        .batchUpdate("update team set member_count = member_count + ? where team_id = ?", updates));
+            } catch (RuntimeException e) {
+                //롤백되었으므로 꺼낸 증감을 되돌려 놓는다.
+                taken.forEach(this::addPending);
+                throw e;
+            }
+            flushedCount.addAndGet(updates.size());
+            return updates.size();
+        } finally {
+            flushLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 커밋 중인 회원 트랜잭션이 끝나기를 기다려 pending 을 반영하고 실제 count 와 다른 팀을 고친다. 고친 팀 수
+     * 고치는 동안에는 회원 트랜잭션이 증감을 모으지 못하므로 pending 과 count 에 같은 회원이 두번 들어가지 않는다.
+     * COMMIT_WAIT_MILLIS 안에 커밋 중인 트랜잭션이 끝나지 않으면 고치지 않고 다음 flush 때 다시 시도한다.
+     */
+    public synchronized int reconcile() {
+        if (!tryLockCommits()) {
+            log.debug("team member_count reconcile postponed, member transactions are committing");
+            reconcileRequested = true;
+            return 0;
+        }
+        try {
+            applyPending();
+            final long stamp = flushLock.writeLock();
+            try {
+                final List<Long> repaired = jdbcTemplate.getObject().queryForList(
+                        "select team_id from final table (" +
+                                "update team t set member_count = (select count(*) from member m where m.team_id = t.team_id) " +
+                                "where member_count <> (select count(*) from member m where m.team_id = t.team_id))",
+                        Long.class);
+                if (!repaired.isEmpty()) {
+                    log.warn("team member_count drift repaired for {} teams", repaired.size());
+                    repairedCount.addAndGet(repaired.size());
+                }
+                return repaired.size();
+            } finally {
+                flushLock.unlockWrite(stamp);
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    private boolean tryLockCommits() {
+        try {
+            return commitLock.writeLock().tryLock(COMMIT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("team member_count flush failed", e);
+        }
+    }
+
+    @EventListener
+    public void onBulkDelete(MemberBulkDeletedEvent event) {
+        reconcileRequested = true;
+    }
+
+    public long getFlushedCount() {
+        return flushedCount.get();
+    }
+
+    public long getRepairedCount() {
+        return repairedCount.get();
+    }
+
+    //트랜잭션 하나에서 모은 팀별 증감. 커밋되면 pending 에 더하고, 어떻게 끝나든 commitLock 을 놓는다.
+    private class CommittingDeltas implements TransactionSynchronization {
+        private final Map<Long, Long> deltas = new HashMap<>();
+
+        private TeamMemberCounter counter() {
+            return TeamMemberCounter.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            try {
+                if (status == STATUS_COMMITTED) {
+                    deltas.forEach((teamId, delta) -> {
+                        if (delta != 0) {
+                            addPending(teamId, delta);
+                        }
+                    });
+                }
+            } finally {
+                commitLock.readLock().unlock();
+            }
+        }
+    }
+}
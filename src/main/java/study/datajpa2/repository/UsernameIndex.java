@@ -0,0 +1,325 @@
+package study.datajpa2.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import study.datajpa2.dto.UsernameMatchDto;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * username 접두어 검색용 trie. like 'x%' 쿼리 없이 메모리에서 찾는다.
+ *
+ * 노드마다 그 접두어로 시작하는 회원 id 를 LongPostings 로 가진다. max-prefix-length 보다 깊은 노드는 만들지 않고
+ * 더 긴 접두어는 그 길이의 노드에서 username 을 직접 비교한다. 대소문자를 구분한다. (DB like 와 같음)
+ *
+ * 시작할 때 member 테이블을 스트리밍해서 만들고 이후에는 MemberChangeListener 가 커밋된 변경을 반영한다.
+ * put/remove 는 id 기준이라 여러번 반영해도 결과가 같으므로, 다시 만드는 중에 커밋된 변경은 기존 trie 에 반영하면서
+ * 모아두었다가 새 trie 에도 반영한 뒤 교체한다. 다시 만드는 동안에도 검색은 기존 trie 로 한다.
+ *
+ * 리스너를 거치지 않는 벌크 삭제가 있으면 다른 쓰레드에서 다시 만든다.
+ * check-interval 마다 회원 수와 id 합을 member 테이블과 비교해서 다르면 다시 만든다.
+ * (SQL 로 username 만 바꾼 경우는 찾지 못한다)
+ */
+@Slf4j
+@Component
+public class UsernameIndex {
+
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final int maxPrefixLength;
+    private final int fetchSize;
+    private final Duration checkInterval;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private Map<Long, String> usernames = new HashMap<>();
+    //다시 만드는 중에만 null 이 아니다. 반영한 (id, username) 을 순서대로 모은다. username 이 null 이면 삭제
+    private List<Object[]> replay;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong rebuildCount = new AtomicLong();
+
+    //DataSource 보다 먼저 만들어지는 엔티티 리스너에서 사용하므로 JdbcTemplate 은 나중에 꺼낸다.
+    public UsernameIndex(ObjectProvider<JdbcTemplate> jdbcTemplate,
+                         @Value("${username-index.max-prefix-length:8}") int maxPrefixLength,
+                         @Value("${username-index.fetch-size:1000}") int fetchSize,
+                         @Value("${username-index.check-interval:10m}") Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPrefixLength = maxPrefixLength;
+        this.fetchSize = fetchSize;
+        this.checkInterval = checkInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "username-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkQuietly,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+    }
+
+    //트랜잭션 안이면 커밋될 때 반영한다.
+    public void put(Long id, String username) {
+        AfterCommit.run(this, () -> apply(id, username));
+    }
+
+    public void remove(Long id) {
+        AfterCommit.run(this, () -> apply(id, null));
+    }
+
+    //리스너를 거치지 않고 지워진 회원이 있으므로 다시 만든다. 커밋한 쓰레드가 기다리지 않도록 다른 쓰레드에서 만든다.
+    @EventListener
+    public void onBulkDelete(MemberBulkDeletedEvent event) {
+        AfterCommit.run(this, () -> scheduler.execute(this::rebuildQuietly));
+    }
+
+    private void apply(Long id, String username) {
+        lock.writeLock().lock();
+        try {
+            apply(root, usernames, id, username);
+            if (replay != null) {
+                replay.add(new Object[]{id, username});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Node root, Map<Long, String> usernames, Long id, String username) {
+        //username 이 그대로인 수정은 건드리지 않는다.
+        if (username != null && username.equals(usernames.get(id))) {
+            return;
+        }
+        final String previous = username == null ? usernames.remove(id) : usernames.put(id, username);
+        if (previous != null) {
+            unindex(root, id, previous);
+        }
+        if (username != null) {
+            index(root, id, username);
+        }
+    }
+
+    private void index(Node root, long id, String username) {
+        Node node = root;
+        for (int i = 0; i < Math.min(username.length(), maxPrefixLength); i++) {
+            node = node.children.computeIfAbsent(username.charAt(i), key -> new Node());
+            node.ids.add(id);
+        }
+    }
+
+    private void unindex(Node root, long id, String username) {
+        final int depth = Math.min(username.length(), maxPrefixLength);
+        final Node[] path = new Node[depth + 1];
+        path[0] = root;
+        for (int i = 0; i < depth; i++) {
+            path[i + 1] = path[i].children.get(username.charAt(i));
+            path[i + 1].ids.remove(id);
+        }
+        //빈 노드는 떼어낸다.
+        for (int i = depth; i > 0 && path[i].ids.isEmpty(); i--) {
+            path[i - 1].children.remove(username.charAt(i - 1));
+        }
+    }
+
+    /**
+     * prefix 로 시작하는 회원을 id 순으로 limit 개까지 찾는다.
+     */
+    public List<UsernameMatchDto> search(String prefix, int limit) {
+        final List<UsernameMatchDto> result = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty() || limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < Math.min(prefix.length(), maxPrefixLength) && node != null; i++) {
+                node = node.children.get(prefix.charAt(i));
+            }
+            if (node == null) {
+                return result;
+            }
+            final boolean verify = prefix.length() > maxPrefixLength;
+            for (int i = 0; i < node.ids.size() && result.size() < limit; i++) {
+                final long id = node.ids.get(i);
+                final String username = usernames.get(id);
+                if (!verify || username.startsWith(prefix)) {
+                    result.add(new UsernameMatchDto(id, username));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //member 테이블을 스트리밍해서 새 trie 를 만든 뒤 교체한다. 만드는 동안 검색과 변경 반영은 기존 trie 로 한다.
+    public synchronized void rebuild() {
+        final List<Object[]> buffer = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            replay = buffer;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        final Node rebuiltRoot = new Node();
+        final Map<Long, String> rebuiltUsernames = new HashMap<>();
+        boolean built = false;
+        try {
+            final JdbcTemplate template = new JdbcTemplate(jdbcTemplate.getObject().getDataSource());
+            template.setFetchSize(fetchSize);
+            template.query("select member_id, username from member where username is not null", (RowCallbackHandler) rs -> {
+                final long id = rs.getLong(1);
+                final String username = rs.getString(2);
+                rebuiltUsernames.put(id, username);
+                index(rebuiltRoot, id, username);
+            });
+            built = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (built) {
+                    for (Object[] change : buffer) {
+                        apply(rebuiltRoot, rebuiltUsernames, (Long) change[0], (String) change[1]);
+                    }
+                    root = rebuiltRoot;
+                    usernames = rebuiltUsernames;
+                }
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        rebuildCount.incrementAndGet();
+        log.info("username index built for {} members", size());
+    }
+
+    //회원 수와 id 합이 member 테이블과 다르면 true
+    public boolean isStale() {
+        final long[] live = jdbcTemplate.getObject().queryForObject(
+                "select count(*), coalesce(sum(member_id), 0) from member where username is not null",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        final long count;
+        long idSum = 0;
+        lock.readLock().lock();
+        try {
+            count = usernames.size();
+            for (Long id : usernames.keySet()) {
+                idSum += id;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (live[0] != count || live[1] != idSum) {
+            log.warn("username index differs from member table: {} members (table {})", count, live[0]);
+            return true;
+        }
+        return false;
+    }
+
+    private void checkQuietly() {
+        try {
+            if (isStale()) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            log.warn("username index check failed", e);
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("username index rebuild failed", e);
+        }
+    }
+
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return usernames.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 대략의 메모리 사용량. 64비트, compressed oops 기준 추정치이다.
+     * trie 노드(HashMap 포함)와 id 배열, id -> username 맵(Long, String 포함)을 더한다.
+     */
+    public Map<String, Long> getFootprint() {
+        lock.readLock().lock();
+        try {
+            final long[] trie = new long[2];    //노드 수, 바이트
+            measure(root, trie);
+            long usernameBytes = 0;
+            for (String username : usernames.values()) {
+                //HashMap.Node 32 + Long 16 + String 24 + byte[] 16 + 길이 (latin1)
+                usernameBytes += 88 + username.length();
+            }
+            usernameBytes += 16 + 4L * Integer.highestOneBit(Math.max(1, usernames.size()) * 2);
+            final long members = usernames.size();
+            final Map<String, Long> footprint = new LinkedHashMap<>();
+            footprint.put("members", members);
+            footprint.put("nodes", trie[0]);
+            footprint.put("trieBytes", trie[1]);
+            footprint.put("usernameBytes", usernameBytes);
+            footprint.put("totalBytes", trie[1] + usernameBytes);
+            footprint.put("bytesPerMember", members == 0 ? 0 : (trie[1] + usernameBytes) / members);
+            return footprint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void measure(Node node, long[] trie) {
+        //Node 16 + HashMap 48 + 테이블, 자식마다 HashMap.Node 32 (ASCII 문자는 Character 캐시를 사용)
+        trie[0]++;
+        trie[1] += 64 + 4L * Integer.highestOneBit(Math.max(1, node.children.size()) * 2)
+                + 32L * node.children.size() + node.ids.estimatedBytes();
+        for (Node child : node.children.values()) {
+            measure(child, trie);
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final LongPostings ids = new LongPostings();
+    }
+}
@@ -2,6 +2,8 @@ package study.datajpa2.repository;
 
 import org.springframework.beans.factory.annotation.Value;
 
+//findProjectionsByUsername 은 엔티티 전체를 조회하고 호출마다 SpEL 을 평가한다.
+//findOpenProjectionsByUsername 은 username, age 만 조회하고 미리 컴파일된 식을 사용한다.
 public interface UsernameOnly {
 
     @Value("#{target.username + ' ' + target.age}")
@@ -0,0 +1,66 @@
+package study.datajpa2.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.repository.MemberRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//로컬 H2 인메모리 DB 두개를 primary, replica 로 사용. 테이블은 primary 에만 생성된다.
+@ActiveProfiles("replica")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "replica.datasources[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "replica.datasources[0].username=sa"
+})
+class ReplicaRoutingTest {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    ReplicaRoutingDataSource replicaRoutingDataSource;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        final TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        //컨텍스트 시작 때 같은 쓰레드에서 저장한 기록이 있으면 primary 로 간다.
+        replicaRoutingDataSource.forgetRecentWrite();
+
+        final String readDatabase = readOnly.execute(status -> jdbcTemplate.queryForObject("select database()", String.class));
+        final String writeDatabase = transactionTemplate.execute(status -> jdbcTemplate.queryForObject("select database()", String.class));
+
+        assertThat(readDatabase).isEqualToIgnoringCase("replica");
+        assertThat(writeDatabase).isEqualToIgnoringCase("primary");
+    }
+
+    @Test
+    void writeTransactionGoesToPrimary() {
+        final long before = replicaRoutingDataSource.getReplicaConnections();
+
+        memberRepository.save(new Member("replicaTest", 10));
+
+        assertThat(replicaRoutingDataSource.getReplicaConnections()).isEqualTo(before);
+    }
+
+    @Test
+    void readYourWrites() {
+        final TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        replicaRoutingDataSource.forgetRecentWrite();
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.queryForObject("select 1", Integer.class));
+        final String readDatabase = readOnly.execute(status -> jdbcTemplate.queryForObject("select database()", String.class));
+
+        assertThat(readDatabase).isEqualToIgnoringCase("primary");
+    }
+}
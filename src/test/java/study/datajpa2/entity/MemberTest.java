@@ -4,6 +4,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import study.datajpa2.querycount.QueryCountScope;
 import study.datajpa2.repository.MemberRepository;
 
 import javax.persistence.Entity;
@@ -12,6 +16,7 @@ import javax.persistence.PersistenceContext;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -71,4 +76,78 @@ class MemberTest {
         System.out.println("findMember.getUpdateDate() = " + findMember.getCreatedBy());
         System.out.println("findMember.getUpdateDate() = " + findMember.getLastModifiedBy());
     }
-}
\ No newline at end of file
+
+    @Test
+    void auditorCachedPerTransaction() {
+        final Member member1 = new Member("member1");
+        final Member member2 = new Member("member2");
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+
+        //같은 트랜잭션에서 등록한 엔티티는 등록자가 같고, 등록할 때 수정일시/수정자도 채워진다.
+        assertThat(member1.getCreatedBy()).isNotNull();
+        assertThat(member2.getCreatedBy()).isEqualTo(member1.getCreatedBy());
+        assertThat(member1.getLastModifiedBy()).isEqualTo(member1.getCreatedBy());
+        assertThat(member1.getLastModifiedDate()).isEqualTo(member1.getCreateDate());
+    }
+
+    @Test
+    void changeTeamDoesNotLoadMembers() {
+        //2차 캐시에서 team, members 를 가져오면 조회 SQL 이 없어도 검사가 의미 없으므로 캐시를 사용하지 않는다.
+        em.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+        final Team team = new Team("large");
+        em.persist(team);
+        for (int i = 0; i < 1000; i++) {
+            em.persist(new Member("large" + i, i % 100, team));
+        }
+        em.flush();
+        em.clear();
+
+        //영속 상태 팀: members 는 로딩하지 않고 add 만 큐에 쌓인다.
+        final Team managed = em.find(Team.class, team.getId());
+        final Long version = managed.getVersion();
+        final QueryCountScope managedScope = QueryCountScope.open("changeTeam managed");
+        try {
+            em.persist(new Member("added1", 10, managed));
+            assertThat(Hibernate.isInitialized(managed.getMembers())).isFalse();
+            em.flush();
+        } finally {
+            managedScope.close();
+        }
+        //id 시퀀스, member insert 외에 team, member 조회나 team 수정은 없고 팀 version 도 그대로다.
+        assertThat(managedScope.getRepeatedStatements(1).keySet())
+                .noneMatch(sql -> sql.toLowerCase().startsWith("select") && sql.toLowerCase().contains("from member"))
+                .noneMatch(sql -> sql.toLowerCase().contains("from team"))
+                .noneMatch(sql -> sql.toLowerCase().startsWith("update team"));
+        assertThat(managed.getVersion()).isEqualTo(version);
+        assertThat(em.createQuery("select t.version from Team t where t.id = :id", Long.class)
+                .setParameter("id", team.getId())
+                .getSingleResult()).isEqualTo(version);
+
+        //큐에 쌓인 add 는 members 를 초기화할 때 반영된다.
+        assertThat(managed.getMembers()).extracting(Member::getUsername).contains("added1");
+
+        //초기화된 members 에 추가해도 팀은 수정하지 않는다. (members 는 낙관적 락 대상이 아니다)
+        em.persist(new Member("added3", 10, managed));
+        em.flush();
+        assertThat(managed.getVersion()).isEqualTo(version);
+
+        //id 만 아는 팀 (프록시): 프록시를 초기화하지 않는다.
+        em.flush();
+        em.clear();
+        final Team proxy = em.getReference(Team.class, team.getId());
+        final QueryCountScope proxyScope = QueryCountScope.open("changeTeam proxy");
+        try {
+            em.persist(new Member("added2", 10, proxy));
+            em.flush();
+            assertThat(Hibernate.isInitialized(proxy)).isFalse();
+        } finally {
+            proxyScope.close();
+        }
+
+        //insert 만 실행되고 team, member(컬렉션) 조회는 없다.
+        assertThat(proxyScope.getRepeatedStatements(1).keySet())
+                .noneMatch(sql -> sql.toLowerCase().startsWith("select") && sql.toLowerCase().contains("from member"))
+                .noneMatch(sql -> sql.toLowerCase().contains("from team"));
+    }
+}
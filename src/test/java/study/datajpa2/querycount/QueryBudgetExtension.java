@@ -0,0 +1,37 @@
+package study.datajpa2.querycount;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * 테스트 메소드에 @QueryBudget 이 있으면 테스트 동안 실행된 SQL 수가 budget 을 넘었을 때 실패시킨다.
+ * 데이터 준비용 insert 도 포함해서 센다.
+ */
+public class QueryBudgetExtension implements BeforeEachCallback, AfterEachCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(QueryBudgetExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        final QueryBudget queryBudget = context.getRequiredTestMethod().getAnnotation(QueryBudget.class);
+        if (queryBudget == null) {
+            return;
+        }
+        final QueryCountScope scope = QueryCountScope.open(context.getDisplayName(), queryBudget.value(), false);
+        context.getStore(NAMESPACE).put(QueryCountScope.class, scope);
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        final QueryCountScope scope = context.getStore(NAMESPACE).remove(QueryCountScope.class, QueryCountScope.class);
+        if (scope == null) {
+            return;
+        }
+        scope.close();
+        if (scope.isOverBudget()) {
+            throw new AssertionError(scope.getName() + " executed " + scope.getTotal()
+                    + " statements, budget is " + scope.getBudget() + ": " + scope.getRepeatedStatements(1));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package study.datajpa2.querycount;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryCountScopeTest {
+
+    @AfterEach
+    void tearDown() {
+        //실패한 테스트가 남긴 scope 를 지운다.
+        while (QueryCountScope.current() != null) {
+            QueryCountScope.current().close();
+        }
+    }
+
+    @Test
+    void closeRestoresParent() {
+        final QueryCountScope outer = QueryCountScope.open("outer");
+        final QueryCountScope inner = QueryCountScope.open("inner");
+
+        inner.close();
+        assertThat(QueryCountScope.current()).isSameAs(outer);
+        outer.close();
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+    @Test
+    void rejectCloseOfNonCurrentScope() {
+        final QueryCountScope outer = QueryCountScope.open("outer");
+        final QueryCountScope inner = QueryCountScope.open("inner");
+
+        //안쪽 scope 가 열려 있으면 바깥 scope 를 닫을 수 없고, 현재 scope 도 그대로다.
+        assertThatThrownBy(outer::close)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Cannot close outer, current scope is inner");
+        assertThat(QueryCountScope.current()).isSameAs(inner);
+
+        //다른 쓰레드에서는 닫을 수 없다.
+        assertThatThrownBy(() -> CompletableFuture.runAsync(inner::close).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(QueryCountScope.current()).isSameAs(inner);
+    }
+}
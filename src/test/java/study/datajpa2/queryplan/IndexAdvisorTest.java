@@ -0,0 +1,74 @@
+package study.datajpa2.queryplan;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa2.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:index-advisor;DB_CLOSE_DELAY=-1",
+        "index-advisor.min-executions=3",
+        "index-advisor.max-cached-sql=5"})
+@Transactional
+class IndexAdvisorTest {
+
+    @Autowired
+    IndexAdvisor indexAdvisor;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        indexAdvisor.reset();
+    }
+
+    @Test
+    void parseHibernateSql() {
+        final List<PredicateShape> shapes = PredicateShape.parse(
+                "select member0_.member_id as member_i1_1_ from member member0_ " +
+                        "left outer join team team1_ on member0_.team_id=team1_.team_id " +
+                        "where member0_.age>? and member0_.username=? and team1_.name in (? , ?) order by member0_.age");
+
+        assertThat(shapes).hasSize(2);
+        assertThat(shapes.get(0).getTable()).isEqualTo("member");
+        assertThat(shapes.get(0).getIndexColumns()).containsExactly("username", "age");
+        assertThat(shapes.get(1).getTable()).isEqualTo("team");
+        assertThat(shapes.get(1).getIndexColumns()).containsExactly("name");
+    }
+
+    @Test
+    void recommendOnlyMissingIndex() {
+        for (int i = 0; i < 3; i++) {
+            memberRepository.findByUsernameAndAgeGreaterThan("advisor", 0);
+            jdbcTemplate.queryForList("select * from member where created_by = ?", "advisor");
+        }
+
+        final List<IndexRecommendation> recommendations = indexAdvisor.advise();
+
+        //username 은 idx_member_username_age 가 있으므로 추천하지 않는다.
+        assertThat(recommendations).extracting(IndexRecommendation::getColumns)
+                .containsExactly(List.of("created_by"));
+        assertThat(recommendations.get(0).getExecutions()).isEqualTo(3);
+        assertThat(recommendations.get(0).getDdl()).isEqualTo("create index idx_member_created_by on member (created_by)");
+    }
+
+    @Test
+    void literalSqlCacheIsCapped() {
+        //리터럴이 다른 SQL 은 캐시 상한을 넘으면 캐시하지 않고 해석만 한다.
+        for (int i = 0; i < 20; i++) {
+            indexAdvisor.record("select * from member where created_by = 'advisor" + i + "'", 1);
+        }
+
+        assertThat(indexAdvisor.cachedSqlCount()).isLessThanOrEqualTo(5);
+        assertThat(indexAdvisor.advise()).extracting(IndexRecommendation::getExecutions).containsExactly(20L);
+    }
+}
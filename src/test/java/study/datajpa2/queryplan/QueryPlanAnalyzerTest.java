@@ -0,0 +1,93 @@
+package study.datajpa2.queryplan;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class QueryPlanAnalyzerTest {
+
+    @Autowired
+    QueryPlanAnalyzer queryPlanAnalyzer;
+
+    @Test
+    void cartesianJoinPlan() {
+        final String plan = "SELECT \"M\".\"MEMBER_ID\"\n" +
+                "FROM \"PUBLIC\".\"MEMBER\" \"M\"\n" +
+                "    /* PUBLIC.MEMBER.tableScan */\n" +
+                "LEFT OUTER JOIN \"PUBLIC\".\"TEAM\" \"T\"\n" +
+                "    /* PUBLIC.TEAM.tableScan */\n" +
+                "    ON 1=1";
+
+        final List<QueryPlanFinding> findings = QueryPlanAnalyzer.inspect("findByNativeProjection", "sql", plan);
+
+        assertThat(findings).extracting(QueryPlanFinding::getType)
+                .containsExactly(QueryPlanFinding.Type.FULL_SCAN, QueryPlanFinding.Type.CARTESIAN_JOIN);
+    }
+
+    @Test
+    void indexedJoinAndMissingIndexPlan() {
+        final String plan = "SELECT \"M\".\"MEMBER_ID\"\n" +
+                "FROM \"PUBLIC\".\"MEMBER\" \"M\"\n" +
+                "    /* PUBLIC.MEMBER.tableScan */\n" +
+                "LEFT OUTER JOIN \"PUBLIC\".\"TEAM\" \"T\"\n" +
+                "    /* PUBLIC.PRIMARY_KEY_2: TEAM_ID = \"M\".\"TEAM_ID\" */\n" +
+                "    ON \"M\".\"TEAM_ID\" = \"T\".\"TEAM_ID\"\n" +
+                "WHERE \"M\".\"AGE\" = ?1";
+
+        final List<QueryPlanFinding> findings = QueryPlanAnalyzer.inspect("findByAge", "sql", plan);
+
+        assertThat(findings).extracting(QueryPlanFinding::getType)
+                .containsExactly(QueryPlanFinding.Type.MISSING_INDEX);
+        assertThat(findings.get(0).getTable()).isEqualTo("MEMBER");
+    }
+
+    @Test
+    void fullIndexScanPlan() {
+        //H2 2.2 는 커버링 인덱스로 전체를 읽으면 tableScan 대신 인덱스 이름만 남긴다.
+        final String plan = "SELECT \"M\".\"MEMBER_ID\" AS \"ID\"\n" +
+                "FROM \"PUBLIC\".\"MEMBER\" \"M\"\n" +
+                "    /* PUBLIC.IDX_MEMBER_TEAM_ID_USERNAME */\n" +
+                "LEFT OUTER JOIN \"PUBLIC\".\"TEAM\" \"T\"\n" +
+                "    /* PUBLIC.PRIMARY_KEY_27: TEAM_ID = M.TEAM_ID */\n" +
+                "    ON \"M\".\"TEAM_ID\" = \"T\".\"TEAM_ID\"";
+
+        assertThat(QueryPlanAnalyzer.inspect("findAll", "sql", plan)).extracting(QueryPlanFinding::getType)
+                .containsExactly(QueryPlanFinding.Type.FULL_SCAN);
+    }
+
+    @Test
+    void repositoryQueries() {
+        final List<QueryPlanFinding> findings = queryPlanAnalyzer.analyze();
+
+        assertThat(findings).extracting(QueryPlanFinding::getMethod)
+                .contains("MemberRepository.findByNativeProjection", "MemberRepository.findNativeProjectionContent");
+        assertThat(findings).extracting(QueryPlanFinding::getType)
+                .doesNotContain(QueryPlanFinding.Type.CARTESIAN_JOIN, QueryPlanFinding.Type.FAILED);
+        //username, age 조건은 선언한 인덱스를 사용한다.
+        assertThat(findings)
+                .filteredOn(finding -> finding.getType() == QueryPlanFinding.Type.MISSING_INDEX)
+                .extracting(QueryPlanFinding::getMethod)
+                .doesNotContain("MemberRepository.findByUsername", "MemberRepository.findByUsernameAndAgeGreaterThan",
+                        "MemberRepository.findByAge");
+    }
+
+    @Test
+    void skipMethodsWithSideEffects() {
+        final List<QueryPlanFinding> findings = queryPlanAnalyzer.analyze();
+
+        //벌크 수정, 비관적 락 메소드는 실행하지 않는다.
+        assertThat(findings)
+                .filteredOn(finding -> finding.getType() == QueryPlanFinding.Type.SKIPPED)
+                .extracting(QueryPlanFinding::getMethod)
+                .contains("MemberRepository.bulkAgePlus", "MemberRepository.findLockByUsername");
+        assertThat(findings)
+                .filteredOn(finding -> finding.getMethod().equals("MemberRepository.bulkAgePlus"))
+                .extracting(QueryPlanFinding::getType)
+                .containsOnly(QueryPlanFinding.Type.SKIPPED);
+    }
+}
@@ -0,0 +1,71 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.datajpa2.dto.MemberDto;
+import study.datajpa2.entity.Member;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//다른 쓰레드에서 조회하므로 데이터가 커밋되어 있어야 한다. @Transactional 을 걸지 않는다.
+//쓰레드 2개, 큐 0 으로 두고 쓰레드를 모두 막아서 거절되는지 확인한다.
+//쓰레드가 1개면 앞의 조회가 끝난 쓰레드가 다음 작업을 받을 준비가 되기 전에 연달아 조회해서 거절될 수 있다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:async-repository;DB_CLOSE_DELAY=-1",
+        "async-repository.pool-size=" + AsyncMemberRepositoryTest.POOL_SIZE, "async-repository.queue-capacity=0"})
+class AsyncMemberRepositoryTest {
+
+    static final int POOL_SIZE = 2;
+
+    @Autowired
+    AsyncMemberRepository asyncMemberRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    ThreadPoolTaskExecutor repositoryExecutor;
+
+    @Test
+    void findAsync() {
+        final Member saved = memberRepository.save(new Member("async", 77));
+
+        final Member member = asyncMemberRepository.findById(saved.getId()).join().get();
+        final Page<MemberDto> page = asyncMemberRepository.findByAge(77, PageRequest.of(0, 5)).join();
+
+        assertThat(member.getUsername()).isEqualTo("async");
+        assertThat(page.getContent()).extracting("username").contains("async");
+
+        memberRepository.delete(member);
+    }
+
+    @Test
+    void rejectWhenExecutorFull() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(POOL_SIZE);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            repositoryExecutor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        started.await();
+
+        try {
+            assertThatThrownBy(() -> asyncMemberRepository.findById(1L))
+                    .isInstanceOf(TaskRejectedException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package study.datajpa2.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//parallel 은 트랜잭션 밖에서만 동작하므로 @Transactional 을 걸지 않는다.
+@SpringBootTest
+class InListExecutorTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    private final List<Member> members = new ArrayList<>();
+    private Team team;
+
+    @AfterEach
+    void tearDown() {
+        members.forEach(member -> memberRepository.deleteById(member.getId()));
+        if (team != null) {
+            teamRepository.deleteById(team.getId());
+        }
+    }
+
+    @Test
+    void parallelOutsideTransaction() {
+        team = teamRepository.save(new Team("inList"));
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            names.add("inList" + i);
+        }
+        members.add(memberRepository.save(new Member("inList0", 10, team)));
+        members.add(memberRepository.save(new Member("inList2999", 10, team)));
+
+        final List<Member> result = memberRepository.findByNamesPartitioned(names, true);
+
+        //준영속이지만 team 은 함께 조회되어 있다.
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("inList0", "inList2999");
+        assertThat(result).allMatch(member -> Hibernate.isInitialized(member.getTeam()));
+        assertThat(result).extracting(member -> member.getTeam().getName()).containsOnly("inList");
+    }
+
+    @Test
+    void sequentialInsideTransaction() {
+        members.add(memberRepository.save(new Member("inListTx", 10)));
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            names.add("inListTx" + i);
+        }
+        names.add("inListTx");
+
+        //호출한 트랜잭션의 영속성 컨텍스트에서 조회하므로 수정하면 저장된다.
+        transactionTemplate.executeWithoutResult(status -> {
+            final List<Member> result = memberRepository.findByNamesPartitioned(names, true);
+            assertThat(result).hasSize(1).allMatch(em::contains);
+            result.get(0).setAge(11);
+        });
+        assertThat(memberRepository.findById(members.get(0).getId()).get().getAge()).isEqualTo(11);
+    }
+
+    @Test
+    void failedBatchCancelsRemaining() throws InterruptedException {
+        final InListExecutor executor = new InListExecutor(1, 1, 10, transactionManager);
+        final AtomicInteger executed = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            //첫 batch 는 실패하고, worker 가 다음 batch 를 잡았으면 실패가 전달될 때까지 붙잡아 둔다.
+            assertThatThrownBy(() -> executor.execute(List.of(1, 2, 3, 4, 5), true, batch -> {
+                executed.incrementAndGet();
+                if (batch.get(0) == 1) {
+                    throw new IllegalStateException("batch " + batch);
+                }
+                await(release);
+                return batch;
+            })).isInstanceOf(IllegalStateException.class).hasMessage("batch [1]");
+            release.countDown();
+            Thread.sleep(200);
+        } finally {
+            executor.shutdown();
+        }
+        //실패한 batch 와 그 사이 시작한 batch 하나 외에는 실행하지 않는다.
+        assertThat(executed.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void rejectParallelismNotSmallerThanConnectionPool() {
+        assertThatThrownBy(() -> new InListExecutor(512, 10, 10, transactionManager))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
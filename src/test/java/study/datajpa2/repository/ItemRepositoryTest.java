@@ -3,8 +3,12 @@ package study.datajpa2.repository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
 import study.datajpa2.entity.Item;
 
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -19,4 +23,25 @@ class ItemRepositoryTest {
         itemRepository.save(item);
     }
 
-}
\ No newline at end of file
+    @Test
+    @Transactional
+    void bulkInsert() {
+        final int inserted = itemRepository.bulkInsert(Arrays.asList(new Item("bulk-1"), new Item("bulk-2")));
+
+        assertThat(inserted).isEqualTo(2);
+        assertThat(itemRepository.findAll()).extracting("id").contains("bulk-1", "bulk-2");
+        //bulk insert 된 row 도 createdDate 가 있어서 isNew() 가 false
+        assertThat(itemRepository.findAll()).allMatch(item -> !item.isNew());
+    }
+
+    @Test
+    @Transactional
+    void bulkInsertIgnoreDuplicates() {
+        itemRepository.bulkInsert(Arrays.asList(new Item("dup-1")));
+
+        final int inserted = itemRepository.bulkInsertIgnoreDuplicates(
+                Arrays.asList(new Item("dup-1"), new Item("dup-2"), new Item("dup-2")));
+
+        assertThat(inserted).isEqualTo(1);
+    }
+}
@@ -0,0 +1,71 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//청크마다 별도 트랜잭션으로 커밋하므로 테스트에 @Transactional 을 걸지 않는다.
+@SpringBootTest
+class MemberBulkAgeUpdaterTest {
+
+    @Autowired
+    MemberBulkAgeUpdater memberBulkAgeUpdater;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    //커밋한 회원은 지운다.
+    private final List<Member> saved = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAllById(saved.stream().map(Member::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void chunkedBulkAgePlus() {
+        final List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            members.add(new Member("chunk" + i, 5000 + i));
+        }
+        members.add(new Member("chunkYoung", 10));
+        saved.addAll(memberRepository.saveAll(members));
+
+        final List<BulkUpdateProgress> progresses = new ArrayList<>();
+        final long updated = memberBulkAgeUpdater.bulkAgePlus(5000, 7, 3, progress -> {
+            synchronized (progresses) {
+                progresses.add(progress);
+            }
+        });
+
+        assertThat(updated).isEqualTo(30);
+        assertThat(progresses).anyMatch(BulkUpdateProgress::isDone);
+        assertThat(memberRepository.findMemberByUsername("chunk0").getAge()).isEqualTo(5001);
+        assertThat(memberRepository.findMemberByUsername("chunkYoung").getAge()).isEqualTo(10);
+    }
+
+    //호출한 트랜잭션의 영속성 컨텍스트와 어긋나므로 트랜잭션 안에서는 실행하지 않는다.
+    @Test
+    void rejectInsideTransaction() {
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                memberBulkAgeUpdater.bulkAgePlus(5000, 7, 1)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectNonPositiveChunkSize() {
+        assertThatThrownBy(() -> memberBulkAgeUpdater.bulkAgePlus(5000, 0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,75 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//잠금은 다른 트랜잭션끼리 확인해야 하므로 @Transactional 을 걸지 않는다.
+@SpringBootTest
+class MemberClaimRepositoryTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    //커밋한 회원은 지운다.
+    private final List<Member> saved = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAllById(ids(saved));
+    }
+
+    @Test
+    void skipLocked() throws Exception {
+        final List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            members.add(new Member("claim", 0));
+        }
+        saved.addAll(memberRepository.saveAll(members));
+
+        final CountDownLatch claimed = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        //첫번째 worker 는 2건을 잡고 트랜잭션을 끝내지 않고 기다린다.
+        final CompletableFuture<List<Long>> first = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    final List<Long> ids = ids(memberRepository.claim(MemberSpec.username("claim"), 2, ClaimMode.SKIP_LOCKED));
+                    claimed.countDown();
+                    await(release);
+                    return ids;
+                }));
+        assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        final List<Long> second = transactionTemplate.execute(status ->
+                ids(memberRepository.claim(MemberSpec.username("claim"), 2, ClaimMode.SKIP_LOCKED)));
+        release.countDown();
+
+        assertThat(second).hasSize(2).doesNotContainAnyElementsOf(first.get(10, TimeUnit.SECONDS));
+    }
+
+    private List<Long> ids(List<Member> members) {
+        return members.stream().map(Member::getId).collect(Collectors.toList());
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -105,6 +105,25 @@ class MemberJpaRepositoryTest {
         assertThat(totalCount).isEqualTo(5);
     }
 
+    @Test
+    void pagingAfter() {
+        //시작할 때 넣는 user10 이나 다른 테스트가 커밋한 회원과 겹치지 않는 나이
+        final int age = 25010;
+        memberJpaRepository.save(new Member("member1", age));
+        memberJpaRepository.save(new Member("member2", age));
+        memberJpaRepository.save(new Member("member3", age));
+        memberJpaRepository.save(new Member("member4", age));
+        memberJpaRepository.save(new Member("member5", age));
+
+        final List<Member> first = memberJpaRepository.findByPageAfter(age, null, null, 3);
+        final Member last = first.get(first.size() - 1);
+        final List<Member> second = memberJpaRepository.findByPageAfter(age, last.getUsername(), last.getId(), 3);
+
+        assertThat(first.size()).isEqualTo(3);
+        assertThat(second.size()).isEqualTo(2);
+        assertThat(second.get(0).getUsername()).isEqualTo("member2");
+    }
+
     @Test
     void bulkUpdate() {
         memberJpaRepository.save(new Member("member1", 10));
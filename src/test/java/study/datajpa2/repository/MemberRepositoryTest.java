@@ -2,31 +2,41 @@ package study.datajpa2.repository;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.transaction.annotation.Transactional;
 import study.datajpa2.dto.MemberDto;
+import study.datajpa2.dto.MemberSearchCondition;
 import study.datajpa2.entity.Member;
 import study.datajpa2.entity.Team;
+import study.datajpa2.querycount.QueryBudget;
+import study.datajpa2.querycount.QueryBudgetExtension;
 
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @Transactional
+@ExtendWith(QueryBudgetExtension.class)
 class MemberRepositoryTest {
 
     @Autowired
     MemberRepository memberRepository;
     @Autowired
     TeamRepository teamRepository;
+    @Autowired
+    OpenProjectionCompiler openProjectionCompiler;
     @PersistenceContext
     EntityManager em;
 
@@ -135,6 +145,44 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    void findMemberDtoPage() {
+        //시작할 때 넣는 회원도 left join 으로 함께 세어진다.
+        final long count = memberRepository.count();
+        final Team teamA = new Team("teamA");
+        teamRepository.save(teamA);
+        //이미 있는 회원보다 앞에 정렬되는 이름을 써서 첫 페이지가 이 회원들로 채워지게 한다.
+        memberRepository.save(new Member("0dto1", 10, teamA));
+        memberRepository.save(new Member("0dto2", 10, teamA));
+        memberRepository.save(new Member("0dto3", 10));
+
+        final PageRequest pageRequest = PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "username"));
+        final Page<MemberDto> page = memberRepository.findMemberDtoPage(pageRequest);
+        final Slice<MemberDto> slice = memberRepository.findMemberDtoSlice(pageRequest);
+
+        assertThat(page.getTotalElements()).isEqualTo(count + 3);
+        assertThat(page.getContent()).extracting("teamName").containsExactly("teamA", "teamA");
+        assertThat(slice.hasNext()).isTrue();
+    }
+
+    //DTO 조회는 team 을 회원마다 따로 조회하지 않는다. (insert batch 2, 시퀀스 최대 4, content + count 2)
+    @Test
+    @QueryBudget(10)
+    void findMemberDtoPageWithoutNPlusOne() {
+        for (int i = 0; i < 10; i++) {
+            final Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("0nPlusOne" + i, 10, team));
+        }
+        em.flush();
+        em.clear();
+
+        //시작할 때 넣는 팀 없는 회원보다 앞에 정렬되는 이름으로 첫 페이지를 채운다.
+        final Page<MemberDto> page = memberRepository.findMemberDtoPage(PageRequest.of(0, 10, Sort.by("username")));
+
+        assertThat(page.getContent()).extracting("teamName").doesNotContainNull();
+    }
+
     @Test
     void findByNames() {
         final Member m1 = new Member("AAA", 10);
@@ -148,6 +196,25 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    void findByNamesPartitioned() {
+        //다른 테스트가 커밋한 AAA 같은 회원과 겹치지 않는 이름을 쓴다.
+        memberRepository.save(new Member("partitionedA", 10));
+        memberRepository.save(new Member("partitionedB", 20));
+
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            names.add("name" + i);
+        }
+        names.add("partitionedA");
+        names.add("partitionedB");
+        names.add("partitionedA");
+
+        final List<Member> result = memberRepository.findByNamesPartitioned(names, false);
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("partitionedA", "partitionedB");
+    }
+
     @Test
     void returnType() {
         final Member m1 = new Member("AAA", 10);
@@ -296,6 +363,32 @@ class MemberRepositoryTest {
         Assertions.assertThat(result.size()).isEqualTo(1);
     }
 
+    @Test
+    void searchWithCachedTemplate() {
+        final Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("m1", 0, teamA));
+        em.persist(new Member("m2", 0, teamA));
+        em.persist(new Member("m1", 0));
+        em.flush();
+        em.clear();
+
+        final MemberSearchCondition both = new MemberSearchCondition("m1", "teamA");
+        final MemberSearchCondition teamOnly = new MemberSearchCondition(null, "teamA");
+        final MemberSearchCondition usernameOnly = new MemberSearchCondition("m1", null);
+
+        assertThat(memberRepository.search(both)).hasSize(1)
+                .hasSameSizeAs(memberRepository.findAll(MemberSpec.of(both)));
+        assertThat(memberRepository.search(teamOnly)).hasSize(2)
+                .hasSameSizeAs(memberRepository.findAll(MemberSpec.of(teamOnly)));
+        assertThat(memberRepository.search(usernameOnly)).hasSize(2)
+                .hasSameSizeAs(memberRepository.findAll(MemberSpec.of(usernameOnly)));
+        //공백 팀 이름도 두 경로 모두 조건으로 적용한다.
+        final MemberSearchCondition blankTeam = new MemberSearchCondition("m1", " ");
+        assertThat(memberRepository.search(blankTeam)).isEmpty();
+        assertThat(memberRepository.findAll(MemberSpec.of(blankTeam))).isEmpty();
+    }
+
     @Test
     void queryByExample() {
         final Team teamA = new Team("teamA");
@@ -340,6 +433,54 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    void openProjections() {
+        em.persist(new Member("m1", 20));
+        em.flush();
+        em.clear();
+
+        final List<UsernameOnly> result = memberRepository.findOpenProjectionsByUsername("m1", UsernameOnly.class);
+
+        assertThat(result).extracting(UsernameOnly::getUsername).containsExactly("m1 20");
+    }
+
+    //default 메소드와 중첩 프로젝션(팀이 없는 회원 포함)
+    interface UsernameWithTeam {
+        String getUsername();
+
+        NestedClosedProjections.TeamInfo getTeam();
+
+        default String getLabel() {
+            return getUsername() + "@" + (getTeam() == null ? "-" : getTeam().getName());
+        }
+    }
+
+    @Test
+    void openProjectionsDefaultAndNested() {
+        final Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("m1", 20, teamA));
+        em.persist(new Member("m1", 30));
+        em.flush();
+        em.clear();
+
+        final List<UsernameWithTeam> result = memberRepository.findOpenProjectionsByUsername("m1", UsernameWithTeam.class);
+
+        assertThat(result).extracting(UsernameWithTeam::getLabel).containsExactlyInAnyOrder("m1@teamA", "m1@-");
+    }
+
+    interface UsernameByLocale {
+        String getUsername(Locale locale);
+    }
+
+    @Test
+    void openProjectionsRejectUnsupportedMethod() {
+        //getter 를 호출할 때가 아니라 컴파일할 때 실패한다.
+        Assertions.assertThatThrownBy(() -> openProjectionCompiler.compile(UsernameByLocale.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unsupported projection method");
+    }
+
     @Test
     void nativeQuery() {
         final Team teamA = new Team("teamA");
@@ -361,4 +502,83 @@ class MemberRepositoryTest {
             System.out.println("memberProject.getTeamName() = " + memberProject.getTeamName());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void keysetPaging() {
+        //desc 에서 시작할 때 넣는 회원(user0~user99)보다 앞에 오는 이름
+        for (int i = 1; i <= 5; i++) {
+            memberRepository.save(new Member("zkeyset" + i, 10));
+        }
+        final Sort sort = Sort.by(Sort.Direction.DESC, "username");
+
+        final KeysetSlice<Member> first = memberRepository.findKeysetPage(sort, null, 3);
+        final KeysetSlice<Member> second = memberRepository.findKeysetPage(sort, first.getNextToken(), 3);
+
+        assertThat(first.getContent()).extracting("username").containsExactly("zkeyset5", "zkeyset4", "zkeyset3");
+        assertThat(first.isHasNext()).isTrue();
+        //뒤에는 시작할 때 넣은 회원이 이어진다.
+        assertThat(second.getContent()).extracting("username").startsWith("zkeyset2", "zkeyset1");
+    }
+
+    @Test
+    void keysetPagingNullValue() {
+        memberRepository.save(new Member("keyset1", 10));
+        final Member noName1 = memberRepository.save(new Member(null, 10));
+        final Member noName2 = memberRepository.save(new Member(null, 10));
+        final Sort sort = Sort.by(Sort.Direction.ASC, "username");
+
+        //null 은 asc 에서 맨 앞이고 id 순으로 이어진다.
+        final KeysetSlice<Member> first = memberRepository.findKeysetPage(sort, null, 1);
+        final KeysetSlice<Member> second = memberRepository.findKeysetPage(sort, first.getNextToken(), 1);
+
+        assertThat(first.getContent()).extracting("id").containsExactly(noName1.getId());
+        assertThat(second.getContent()).extracting("id").containsExactly(noName2.getId());
+    }
+
+    @Test
+    void keysetPagingInvalidToken() {
+        final Sort sort = Sort.by(Sort.Direction.ASC, "username");
+
+        Assertions.assertThatThrownBy(() -> memberRepository.findKeysetPage(sort, "not-a-token", 3))
+                .isInstanceOf(InvalidContinuationTokenException.class);
+        Assertions.assertThatThrownBy(() -> memberRepository.findKeysetPage(Sort.by("age"),
+                        new KeysetToken("age", Sort.Direction.ASC, 1L, "x").encode(), 3))
+                .isInstanceOf(InvalidContinuationTokenException.class);
+    }
+
+    @Test
+    void saveAllBatched() {
+        //시작할 때 넣는 회원이 있으므로 넣기 전과의 차이를 확인한다.
+        final long count = memberRepository.count();
+        final int dtoCount = memberRepository.findMemberDto().size();
+        final List<Team> teams = teamRepository.saveAllBatched(Arrays.asList(new Team("teamA"), new Team("teamB")));
+
+        final List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new Member("member" + i, i, teams.get(i % 2)));
+        }
+        memberRepository.saveAllBatched(members);
+
+        assertThat(memberRepository.count()).isEqualTo(count + 250);
+        assertThat(memberRepository.findMemberDto()).hasSize(dtoCount + 250);
+    }
+
+    @Test
+    void streamAll() {
+        final Team team = new Team("streamTeam");
+        em.persist(team);
+        for (int i = 0; i < 25; i++) {
+            em.persist(new Member("member" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //시작할 때 넣는 회원처럼 팀이 없는 회원도 함께 조회된다.
+        try (Stream<Member> stream = memberRepository.streamAll(10, 10)) {
+            final long count = stream
+                    .filter(m -> m.getTeam() != null && m.getTeam().getName().equals("streamTeam"))
+                    .count();
+            assertThat(count).isEqualTo(25);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//충돌을 만들려면 트랜잭션이 실제로 커밋되어야 하므로 @Transactional 을 걸지 않는다.
+@SpringBootTest
+class OptimisticRetryExecutorTest {
+
+    @Autowired
+    OptimisticRetryExecutor optimisticRetryExecutor;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void retryOnConflict() {
+        final Long id = memberRepository.save(new Member("optimistic", 10)).getId();
+        final long conflicts = optimisticRetryExecutor.getConflictCount();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        optimisticRetryExecutor.execute(() -> {
+            final Member member = memberRepository.findById(id).get();
+            if (attempts.incrementAndGet() == 1) {
+                //첫 시도 중에 다른 트랜잭션이 먼저 수정하고 커밋한다.
+                CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status ->
+                        memberRepository.findById(id).get().setUsername("other"))).join();
+            }
+            member.setAge(member.getAge() + 1);
+        });
+
+        final Member member = memberRepository.findById(id).get();
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(optimisticRetryExecutor.getConflictCount()).isEqualTo(conflicts + 1);
+        assertThat(member.getAge()).isEqualTo(11);
+        assertThat(member.getUsername()).isEqualTo("other");
+    }
+}
@@ -0,0 +1,88 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa2.dto.MemberDto;
+import study.datajpa2.entity.Member;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class PagedMemberRepositoryTest {
+
+    @Autowired
+    PagedMemberRepository pagedMemberRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PageCountCache pageCountCache;
+
+    //시작할 때 넣는 회원(0~99살)과 다른 테스트가 사용하지 않는 나이
+    private static final int AGE = 25000;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 5; i++) {
+            memberRepository.save(new Member("member" + i, AGE));
+        }
+        pageCountCache.invalidate();
+    }
+
+    @Test
+    void shortPageSkipsCount() {
+        final long executed = pageCountCache.getExecutedCount();
+
+        final Page<Member> page = pagedMemberRepository.findByAge(AGE, PageRequest.of(0, 10));
+
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(pageCountCache.getExecutedCount()).isEqualTo(executed);
+    }
+
+    @Test
+    void cachedCount() {
+        final long executed = pageCountCache.getExecutedCount();
+
+        pagedMemberRepository.findByAge(AGE, PageRequest.of(0, 3));
+        final Page<Member> page = pagedMemberRepository.findByAge(AGE, PageRequest.of(0, 3));
+
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(pageCountCache.getExecutedCount()).isEqualTo(executed + 1);
+    }
+
+    @Test
+    void invalidateOnSaveAndBulkUpdate() {
+        pagedMemberRepository.findByAge(AGE, PageRequest.of(0, 3));
+
+        memberRepository.save(new Member("member6", AGE));
+        assertThat(pagedMemberRepository.findByAge(AGE, PageRequest.of(0, 3)).getTotalElements()).isEqualTo(6);
+
+        memberRepository.bulkAgePlus(AGE);
+        assertThat(pagedMemberRepository.findByAge(AGE, PageRequest.of(0, 3)).getTotalElements()).isEqualTo(0);
+    }
+
+    @Test
+    void etagChangesOnlyWhenPageChanges() {
+        final PageRequest pageRequest = PageRequest.of(0, 10);
+        final Member member = memberRepository.save(new Member("etag", AGE));
+        final String etag = pagedMemberRepository.findMemberDtoByAgeEtag(AGE, pageRequest);
+        assertThat(pagedMemberRepository.findMemberDtoByAgeEtag(AGE, pageRequest)).isEqualTo(etag);
+
+        //변경 감지로 version 이 올라간다. (조회 전에 flush)
+        member.setUsername("changed");
+
+        assertThat(pagedMemberRepository.findMemberDtoByAgeEtag(AGE, pageRequest)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void unsortedPageOrderedById() {
+        final Page<MemberDto> page = pagedMemberRepository.findMemberDtoByAge(AGE, PageRequest.of(0, 10));
+
+        assertThat(page.getContent()).extracting(MemberDto::getId).isSorted();
+    }
+}
@@ -0,0 +1,78 @@
+package study.datajpa2.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//쿼리 캐시는 트랜잭션이 커밋되어야 반영되므로 테스트에 @Transactional 을 걸지 않는다.
+//커밋된 데이터는 다른 테스트 클래스도 보므로 만든 row 는 지우고, 벌크 수정은 이 테스트의 회원만 해당되는 나이로 한다.
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    Statistics statistics;
+    Long teamId;
+    Long memberId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (memberId != null) {
+            memberRepository.deleteById(memberId);
+        }
+        if (teamId != null) {
+            teamRepository.deleteById(teamId);
+        }
+    }
+
+    @Test
+    void teamCache() {
+        final Team team = teamRepository.save(new Team("cacheTeam"));
+        teamId = team.getId();
+
+        teamRepository.findById(team.getId());
+        teamRepository.findById(team.getId());
+
+        assertThat(statistics.getCacheRegionStatistics("team").getHitCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void queryCacheInvalidatedByBulkUpdate() {
+        memberId = memberRepository.save(new Member("cacheMember", 10000)).getId();
+
+        memberRepository.findMemberByUsername("cacheMember");
+        final Member cached = memberRepository.findMemberByUsername("cacheMember");
+        assertThat(statistics.getQueryCacheHitCount()).isGreaterThanOrEqualTo(1);
+        assertThat(cached.getAge()).isEqualTo(10000);
+
+        final int updatedCount = transactionTemplate.execute(status -> memberRepository.bulkAgePlus(10000));
+
+        final Member updated = memberRepository.findMemberByUsername("cacheMember");
+        assertThat(updatedCount).isEqualTo(1);
+        assertThat(updated.getAge()).isEqualTo(10001);
+    }
+}
@@ -0,0 +1,131 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.dto.TeamAgeStatsDto;
+import study.datajpa2.entity.Member;
+import study.datajpa2.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//커밋될 때 반영되는지 확인하므로 @Transactional 을 걸지 않는다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:age-summary;DB_CLOSE_DELAY=-1",
+        "age-summary.check-interval=1h"})
+class TeamAgeSummaryTest {
+
+    @Autowired
+    TeamAgeSummary teamAgeSummary;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberBulkAgeUpdater memberBulkAgeUpdater;
+
+    //다른 테스트, 시작할 때 넣는 회원(0~99살)과 겹치지 않는 나이를 사용하고 만든 회원, 팀은 지운다.
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    void rebuild() {
+        teamAgeSummary.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberIds.forEach(id -> memberRepository.findById(id).ifPresent(memberRepository::delete));
+        teamIds.forEach(teamRepository::deleteById);
+    }
+
+    @Test
+    void incrementalUpdate() {
+        final Team team = saveTeam("ageSummary");
+        final List<Member> members = saveMembers(team, 20015, 20025, 20027);
+
+        TeamAgeStatsDto stats = teamAgeSummary.getTeamStats(team.getId());
+        assertThat(stats.getMemberCount()).isEqualTo(3);
+        assertThat(stats.getAverageAge()).isEqualTo(60067 / 3.0);
+        assertThat(stats.getAgeDistribution()).isEqualTo(Map.of(20010, 1L, 20020, 2L));
+
+        transactionTemplate.executeWithoutResult(status ->
+                memberRepository.findById(members.get(0).getId()).get().setAge(20019));
+        //bulkAgePlus 는 age 이상인 칸만 옮긴다.
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(20020));
+
+        stats = teamAgeSummary.getTeamStats(team.getId());
+        assertThat(stats.getAverageAge()).isEqualTo(60073 / 3.0);
+        assertThat(stats.getAgeDistribution()).isEqualTo(Map.of(20010, 1L, 20020, 2L));
+
+        //롤백되면 반영하지 않는다. (벌크 수정 포함)
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("age4", 20040, teamRepository.getReferenceById(team.getId())));
+            memberRepository.bulkAgePlus(20020);
+            status.setRollbackOnly();
+        });
+        memberRepository.deleteById(members.get(1).getId());
+
+        stats = teamAgeSummary.getTeamStats(team.getId());
+        assertThat(stats.getMemberCount()).isEqualTo(2);
+        assertThat(stats.getAgeDistribution()).isEqualTo(Map.of(20010, 1L, 20020, 1L));
+        assertThat(teamAgeSummary.check()).isZero();
+    }
+
+    //청크마다 커밋되면 그 청크에서 수정된 회원만 옮긴다.
+    @Test
+    void chunkedBulkAgePlus() {
+        final Team team = saveTeam("ageChunk");
+        saveMembers(team, 30015, 30025, 30029);
+
+        memberBulkAgeUpdater.bulkAgePlus(30020, 100, 2);
+
+        final TeamAgeStatsDto stats = teamAgeSummary.getTeamStats(team.getId());
+        assertThat(stats.getAverageAge()).isEqualTo(90071 / 3.0);
+        assertThat(stats.getAgeDistribution()).isEqualTo(Map.of(30010, 1L, 30020, 1L, 30030, 1L));
+        assertThat(teamAgeSummary.check()).isZero();
+    }
+
+    @Test
+    void rebuildOnMismatch() {
+        final Team team = saveTeam("ageDrift");
+        final Member member = saveMembers(team, 40030).get(0);
+
+        //리스너를 거치지 않고 바꾼다.
+        jdbcTemplate.update("update member set age = 40050 where member_id = ?", member.getId());
+        assertThat(teamAgeSummary.check()).isEqualTo(2);
+
+        teamAgeSummary.rebuild();
+        assertThat(teamAgeSummary.check()).isZero();
+        assertThat(teamAgeSummary.getTeamStats(team.getId()).getAgeDistribution()).isEqualTo(Map.of(40050, 1L));
+    }
+
+    private Team saveTeam(String name) {
+        final Team team = teamRepository.save(new Team(name));
+        teamIds.add(team.getId());
+        return team;
+    }
+
+    private List<Member> saveMembers(Team team, int... ages) {
+        final List<Member> members = new ArrayList<>();
+        for (int age : ages) {
+            members.add(new Member(team.getName() + age, age, team));
+        }
+        memberRepository.saveAllBatched(members);
+        members.forEach(member -> memberIds.add(member.getId()));
+        return members;
+    }
+}
@@ -0,0 +1,148 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.entity.Member;
+import study.datajpa2.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//커밋될 때 반영되는지 확인하므로 @Transactional 을 걸지 않는다. flush 는 테스트에서 직접 호출한다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:team-count;DB_CLOSE_DELAY=-1",
+        "team-count.flush-interval=1h"})
+class TeamMemberCounterTest {
+
+    @Autowired
+    TeamMemberCounter teamMemberCounter;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    //만든 회원, 팀은 지운다.
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> teamIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        memberIds.forEach(id -> memberRepository.findById(id).ifPresent(memberRepository::delete));
+        teamIds.forEach(teamRepository::deleteById);
+    }
+
+    @Test
+    void incrementalCount() {
+        final Team team = saveTeam("counterA");
+        final Team other = saveTeam("counterB");
+        final List<Member> members = List.of(
+                new Member("counter1", 10, team), new Member("counter2", 10, team), new Member("counter3", 10, team));
+        memberRepository.saveAllBatched(members);
+        members.forEach(member -> memberIds.add(member.getId()));
+
+        //flush 전에는 pending 으로, 후에는 team 테이블 값으로 조회된다.
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(3);
+        teamMemberCounter.flush();
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(3);
+
+        transactionTemplate.executeWithoutResult(status ->
+                memberRepository.findById(members.get(0).getId()).get()
+                        .changeTeam(teamRepository.findById(other.getId()).get()));
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(2);
+        assertThat(teamMemberCounter.getMemberCount(other.getId())).isEqualTo(1);
+
+        //롤백되면 반영하지 않는다.
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("counter4", 10, teamRepository.getReferenceById(team.getId())));
+            status.setRollbackOnly();
+        });
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(2);
+
+        memberRepository.deleteById(members.get(1).getId());
+        teamMemberCounter.flush();
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void reconcileDrift() {
+        final Team team = saveTeam("drift");
+        saveMember("drift1", team);
+        teamMemberCounter.flush();
+
+        jdbcTemplate.update("update team set member_count = 100 where team_id = ?", team.getId());
+
+        assertThat(teamMemberCounter.reconcile()).isGreaterThanOrEqualTo(1);
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void reconcileWaitsForCommittingTransaction() {
+        final Team team = saveTeam("committing");
+        saveMember("committing1", team);
+        teamMemberCounter.flush();
+
+        //커밋은 되었지만 증감을 pending 에 더하기 전에 다른 쓰레드에서 reconcile 한다.
+        //그 사이에 count 로 맞추면 커밋된 회원이 count 와 pending 에 두번 들어간다.
+        transactionTemplate.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    CompletableFuture.runAsync(teamMemberCounter::reconcile).join();
+                }
+            });
+            memberIds.add(memberRepository.save(new Member("committing2", 10, teamRepository.getReferenceById(team.getId()))).getId());
+        });
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(2);
+
+        teamMemberCounter.reconcile();
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void failedFlushKeepsPending() {
+        final Team team = saveTeam("flushFail");
+        saveMember("flushFail1", team);
+        teamMemberCounter.flush();
+
+        //반영 트랜잭션이 실패하면 꺼낸 증감을 되돌려 놓고, 다음 flush 때 한번만 반영한다.
+        saveMember("flushFail2", team);
+        jdbcTemplate.execute("alter table team add constraint team_member_count_limit " +
+                "check (team_id <> " + team.getId() + " or member_count < 2)");
+        try {
+            assertThatThrownBy(() -> teamMemberCounter.flush()).isInstanceOf(DataAccessException.class);
+            assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(2);
+        } finally {
+            jdbcTemplate.execute("alter table team drop constraint team_member_count_limit");
+        }
+
+        teamMemberCounter.flush();
+        assertThat(teamMemberCounter.getMemberCount(team.getId())).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select member_count from team where team_id = ?", Long.class, team.getId()))
+                .isEqualTo(2);
+    }
+
+    private Team saveTeam(String name) {
+        final Team team = teamRepository.save(new Team(name));
+        teamIds.add(team.getId());
+        return team;
+    }
+
+    private void saveMember(String username, Team team) {
+        memberIds.add(memberRepository.save(new Member(username, 10, team)).getId());
+    }
+}
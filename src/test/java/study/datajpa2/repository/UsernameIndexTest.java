@@ -0,0 +1,101 @@
+package study.datajpa2.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa2.dto.UsernameMatchDto;
+import study.datajpa2.entity.Member;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//커밋될 때 반영되는지 확인하므로 @Transactional 을 걸지 않는다.
+//max-prefix-length 보다 긴 접두어는 username 을 직접 비교하므로 짧게 둔다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:username-index;DB_CLOSE_DELAY=-1",
+        "username-index.max-prefix-length=3"})
+class UsernameIndexTest {
+
+    @Autowired
+    UsernameIndex usernameIndex;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void prefixSearch() {
+        final Member alpha = memberRepository.save(new Member("zqAlpha", 10));
+        final Member alps = memberRepository.save(new Member("zqAlps", 10));
+        final Member beta = memberRepository.save(new Member("zqBeta", 10));
+
+        assertThat(usernames("zqAl")).containsExactly("zqAlpha", "zqAlps");
+        assertThat(usernames("zq")).containsExactly("zqAlpha", "zqAlps", "zqBeta");
+        assertThat(usernames("zqAlpha")).containsExactly("zqAlpha");
+        assertThat(usernames("zqX")).isEmpty();
+        assertThat(usernameIndex.search("zq", 1)).extracting(UsernameMatchDto::getId).containsExactly(alpha.getId());
+
+        transactionTemplate.executeWithoutResult(status ->
+                memberRepository.findById(beta.getId()).get().setUsername("zqAlpine"));
+        //롤백되면 반영하지 않는다.
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("zqAlien", 10));
+            status.setRollbackOnly();
+        });
+        memberRepository.deleteById(alps.getId());
+
+        assertThat(usernames("zqAl")).containsExactly("zqAlpha", "zqAlpine");
+        assertThat(usernames("zqB")).isEmpty();
+
+        //다시 만들어도 결과가 같다.
+        usernameIndex.rebuild();
+        assertThat(usernames("zqAl")).containsExactly("zqAlpha", "zqAlpine");
+        assertThat(usernameIndex.getFootprint().get("members")).isEqualTo((long) usernameIndex.size());
+        assertThat(usernameIndex.getFootprint().get("bytesPerMember")).isPositive();
+    }
+
+    //벌크 삭제 후에는 다른 쓰레드에서 다시 만든다.
+    @Test
+    void rebuildAfterBulkDelete() throws InterruptedException {
+        final Member member = memberRepository.save(new Member("zwBulk", 10));
+        assertThat(usernames("zwB")).containsExactly("zwBulk");
+
+        final long rebuilds = usernameIndex.getRebuildCount();
+        memberRepository.deleteAllByIdInBatch(List.of(member.getId()));
+        for (int i = 0; i < 100 && usernameIndex.getRebuildCount() == rebuilds; i++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(usernameIndex.getRebuildCount()).isGreaterThan(rebuilds);
+        assertThat(usernames("zwB")).isEmpty();
+    }
+
+    @Test
+    void staleCheck() {
+        assertThat(usernameIndex.isStale()).isFalse();
+
+        //리스너를 거치지 않고 넣는다.
+        jdbcTemplate.update("insert into member (member_id, username, age) values (-1, 'zvRaw', 10)");
+        try {
+            assertThat(usernameIndex.isStale()).isTrue();
+            usernameIndex.rebuild();
+            assertThat(usernameIndex.isStale()).isFalse();
+            assertThat(usernames("zvR")).containsExactly("zvRaw");
+        } finally {
+            jdbcTemplate.update("delete from member where member_id = -1");
+            usernameIndex.rebuild();
+        }
+    }
+
+    private List<String> usernames(String prefix) {
+        return usernameIndex.search(prefix, 100).stream()
+                .map(UsernameMatchDto::getUsername)
+                .collect(Collectors.toList());
+    }
+}